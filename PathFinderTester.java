@@ -1,5 +1,9 @@
 import java.io.*;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -28,13 +32,34 @@ class PathFinderTester {
      * Print help/usage message.
      */
     public static void usage(String progName) {
-        System.err.println(progName + ": [-v -t: -w: -o:] <parameter fileName>");
+        System.err.println(progName + ": [-v -c -a -p -t: -w: -o: -f: -m: -b: -n: -s: -k:] <parameter fileName>");
         System.err.println("options are: ");
         System.err.println("-v ");
         System.err.println("-t <terrain parameter filename> ");
         System.err.println("-w <waypoint parameter filename> ");
         System.err.println("-o <path output filename> ");
+        System.err.println("-f <path output format: text, runs or binary> ");
+        System.err.println("-m <binary map output filename> ");
+        System.err.println("-b <query filename> ");
+        System.err.println("-n <number of threads for -b, or of searches at once for -s> ");
+        System.err.println("-s <port of the local query server> ");
+        System.err.println("-k <number of results cached for -b and -s> ");
         System.err.println("-v will activate map and path visualisation.");
+        System.err.println("-c will store the map compactly, for large maps. With -o and without -v, the path");
+        System.err.println("   is then streamed to the file as it is traced, and not printed.");
+        System.err.println("-f sets the format of the -o path: text \"(r,c) (r,c) ...\" (default), runs of steps");
+        System.err.println("   \"(r,c) D12 R3 ...\", or binary: int cell count, int row, int col, 2 bits per step.");
+        System.err.println("-m converts the parameter, terrain and waypoint files to a binary map file, which loads");
+        System.err.println("   much faster when given as the parameter file, and exits.");
+        System.err.println("-p picks the waypoint order by trying every order in parallel, exact but only");
+        System.err.println("   practical for about a dozen waypoints; by default it is exact up to 20, heuristic beyond.");
+        System.err.println("-a routes every origin on its own to the nearest destination, through one flow field,");
+        System.err.println("   and writes one result line per origin, in order, to the -o file or the screen.");
+        System.err.println("-b answers every query of the file instead of the map origins and destinations, one per line:");
+        System.err.println("   <origin r c ...> ; <destination r c ...> [; <waypoint r c ...>]");
+        System.err.println("   and writes one result line per query, in order, to the -o file or the screen.");
+        System.err.println("-s answers query lines sent to 127.0.0.1 on the port until stopped; 0 picks a free port.");
+        System.err.println("   STATS returns the request count, queue depth and latencies, QUIT ends a connection.");
         System.exit(1);
     } // end of usage
 
@@ -49,13 +74,22 @@ class PathFinderTester {
         // parse command line options
         //
 
-        OptionParser parser = new OptionParser("o:vt:w:");
+        OptionParser parser = new OptionParser("o:f:vcapt:w:m:b:n:s:k:");
         OptionSet options = parser.parse(args);
 
         String outputFilename = null;
+        PathWriter.Format pathFormat = PathWriter.Format.TEXT;
         boolean isVisu = false;
+        boolean isCompact = false;
+        boolean isAgents = false;
+        TourSolver tourSolver = null;
         String terrainFilename = null;
         String waypointFilename = null;
+        String binaryFilename = null;
+        String queryFilename = null;
+        int threadNum = Runtime.getRuntime().availableProcessors();
+        int serverPort = -1;
+        int cacheSize = 0;
 
         // -o <inputFilename> specifies the file that stores the shortest path results (optional)
         if (options.has("o")) {
@@ -66,10 +100,36 @@ class PathFinderTester {
                 usage(progName);
             }
         }
+        // -f <format> specifies the format of the path output file (optional)
+        if (options.has("f")) {
+            if (options.hasArgument("f")) {
+                try {
+                    pathFormat = PathWriter.Format.of((String) options.valueOf("f"));
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    usage(progName);
+                }
+            } else {
+                System.err.println("Missing format argument for -f option.");
+                usage(progName);
+            }
+        }
         // -v to visualise graph
         if (options.has("v")) {
             isVisu = true;
         }
+        // -c to store the map compactly
+        if (options.has("c")) {
+            isCompact = true;
+        }
+        // -a to route every origin on its own
+        if (options.has("a")) {
+            isAgents = true;
+        }
+        // -p to pick the waypoint order with the parallel exhaustive solver
+        if (options.has("p")) {
+            tourSolver = new ParallelPermutationTourSolver();
+        }
         // -t <terrain filename> specifies the (optional) terrain parameter filename
         if (options.has("t")) {
             if (options.hasArgument("t")) {
@@ -89,6 +149,67 @@ class PathFinderTester {
             }
         }
 
+        // -m <binary map filename> specifies the binary map file to convert the map to
+        if (options.has("m")) {
+            if (options.hasArgument("m")) {
+                binaryFilename = (String) options.valueOf("m");
+            } else {
+                System.err.println("Missing filename argument for -m option.");
+                usage(progName);
+            }
+        }
+
+
+        // -b <query filename> specifies the (optional) batch query filename
+        if (options.has("b")) {
+            if (options.hasArgument("b")) {
+                queryFilename = (String) options.valueOf("b");
+            } else {
+                System.err.println("Missing filename argument for -b option.");
+                usage(progName);
+            }
+        }
+        // -n <number> specifies the number of threads that answer the batch queries
+        if (options.has("n")) {
+            try {
+                threadNum = Integer.parseInt((String) options.valueOf("n"));
+            } catch (NumberFormatException e) {
+                threadNum = 0;
+            }
+            if (threadNum < 1) {
+                System.err.println("The number of threads should be 1 or more.");
+                usage(progName);
+            }
+        }
+
+
+        // -s <port> runs the query server on the port
+        if (options.has("s")) {
+            try {
+                serverPort = Integer.parseInt((String) options.valueOf("s"));
+            } catch (NumberFormatException e) {
+                serverPort = -1;
+            }
+            if (serverPort < 0 || serverPort > 65535) {
+                System.err.println("The server port should be between 0 and 65535.");
+                usage(progName);
+            }
+        }
+
+
+        // -k <number> caches the results of that many queries
+        if (options.has("k")) {
+            try {
+                cacheSize = Integer.parseInt((String) options.valueOf("k"));
+            } catch (NumberFormatException e) {
+                cacheSize = 0;
+            }
+            if (cacheSize < 1) {
+                System.err.println("The cache size should be 1 or more.");
+                usage(progName);
+            }
+        }
+
 
         // non option arguments
         List<?> tempArgs = options.nonOptionArguments();
@@ -107,190 +228,87 @@ class PathFinderTester {
         // parameter filename
         String paraFilename = remainArgs.get(0);
 
-        // number of rows and columns in map
-        int rowNum = 0;
-        int colNum = 0;
-
-        // origin and destination lists
-        List<Coordinate> originCells = new ArrayList<Coordinate>();
-        List<Coordinate> destCells = new ArrayList<Coordinate>();
-
-        // impassable, terrain and waypoint containters
-        Set<Coordinate> impassableCells = new HashSet<Coordinate>();
-        Map<Coordinate, Integer> terrainCells = new HashMap<Coordinate, Integer>();
-        List<Coordinate> waypointCells = new ArrayList<Coordinate>();
-
-        //
-        // Parse parameter files
-        //
-
-        // First parse main parameter file
+        // load the binary map file, or parse the text parameter files
+        PathMap map = null;
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(paraFilename));
-            String line;
-
-            // read in row and column number
-            if ((line = reader.readLine()) != null) {
-                String[] tokens = line.trim().split("\\s+");
-
-                if (tokens.length != 2) {
-                    System.err.println(
-                            "There should be two numbers representing the number of rows and columns.");
-                } else {
-                    rowNum = Integer.parseInt(tokens[0]);
-                    colNum = Integer.parseInt(tokens[1]);
-
-                    // check Input
-                    if (rowNum <= 0 || colNum <= 0) {
-                        throw new IllegalArgumentException("Map dimensions cannot be 0 or less.");
-                    }
-                }
-            }
-
-            // read in origin coordinates
-            if ((line = reader.readLine()) != null) {
-                String[] tokens = line.trim().split("\\s+");
-
-                if (tokens.length < 2 || tokens.length % 2 != 0) {
-                    System.err.println(
-                            "Origin coordinates should be in pairs.");
-                } else {
-                    for (int i = 0; i < tokens.length; i += 2) {
-                        int r = Integer.parseInt(tokens[i]);
-                        int c = Integer.parseInt(tokens[i + 1]);
-                        if (r < 0 || r >= rowNum || c < 0 || c >= colNum) {
-                            throw new IllegalArgumentException(
-                                    "Origin coordinates cannot be less than 0 or greater than the number of rows or columns in map.");
-                        }
-                        originCells.add(new Coordinate(r, c));
-                    }
-                }
-            }
-
-            // read in destination coordinates
-            if ((line = reader.readLine()) != null) {
-                String[] tokens = line.trim().split("\\s+");
-
-                if (tokens.length < 2 || tokens.length % 2 != 0) {
-                    System.err.println(
-                            "Destination coordinates should be in pairs.");
-                } else {
-                    for (int i = 0; i < tokens.length; i += 2) {
-                        int r = Integer.parseInt(tokens[i]);
-                        int c = Integer.parseInt(tokens[i + 1]);
-                        if (r < 0 || r >= rowNum || c < 0 || c >= colNum) {
-                            throw new IllegalArgumentException(
-                                    "Destination coordinates cannot be less than 0 or greater than the number of rows or columns in map.");
-                        }
-                        destCells.add(new Coordinate(r, c));
-                    }
-                }
-            }
-
-            // read in impassible coordinates
-            while ((line = reader.readLine()) != null) {
-                String[] tokens = line.trim().split("\\s+");
-
-                if (tokens.length != 2) {
-                    System.err.println(
-                            "Impassable coordinates should be in pairs");
-                } else {
-                    impassableCells.add(new Coordinate(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1])));
+            if (MapFile.isMapFile(Paths.get(paraFilename))) {
+                if (terrainFilename != null || waypointFilename != null) {
+                    System.err.println("Terrain and waypoints are stored in the binary map file.");
+                    usage(progName);
                 }
+                map = MapFile.read(Paths.get(paraFilename));
+            } else {
+                map = readTextMap(paraFilename, terrainFilename, waypointFilename, isCompact);
             }
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.err.println("Parameter file doesn't exist.");
             usage(progName);
-        } catch (IOException e) {
-            System.err.println("IO error.");
-            usage(progName);
         } catch (IllegalArgumentException e) {
             System.err.println(e);
             usage(progName);
+        } catch (IOException e) {
+            System.err.println("IO error: " + e.getMessage());
+            usage(progName);
         }
 
-
-        // check if need to parse terrain parameter file
-        if (terrainFilename != null) {
-            // parse terrain file
+        // convert the map to a binary map file
+        if (binaryFilename != null) {
             try {
-                BufferedReader reader = new BufferedReader(new FileReader(terrainFilename));
-                String line;
-
-                while ((line = reader.readLine()) != null) {
-                    String[] tokens = line.trim().split("\\s+");
-
-                    if (tokens.length != 3) {
-                        System.err.println(
-                                "Terrain should be two coordinates and cost");
-                    } else {
-                        int cost = Integer.parseInt(tokens[2]);
-                        if (cost < 1) {
-                            System.err.println(
-                                    "Terrain cost must be 1 or more");
-                        } else {
-                            Coordinate coord = new Coordinate(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]));
-                            terrainCells.put(coord, new Integer(cost));
-                        }
-                    }
-                }
-            } catch (FileNotFoundException e) {
-                System.err.println("Parameter file doesn't exist.");
-                usage(progName);
-            } catch (IOException e) {
-                System.err.println("IO error.");
+                MapFile.write(map, Paths.get(binaryFilename));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Cannot write the binary map file: " + e.getMessage());
                 usage(progName);
             }
+            return;
         }
+        map.isVisu = isVisu;
 
-        // check if need to parse waypoint parameter file
-        if (waypointFilename != null) {
-            try {
-                BufferedReader reader = new BufferedReader(new FileReader(waypointFilename));
-                String line;
-
-                while ((line = reader.readLine()) != null) {
-                    String[] tokens = line.trim().split("\\s+");
+        // display it
+        map.draw();
 
-                    if (tokens.length != 2) {
-                        System.err.println(
-                                "Waypoints should be two coordinates");
-                    } else {
-                        waypointCells.add(new Coordinate(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1])));
-                    }
-                }
-                reader.close();
-            } catch (FileNotFoundException e) {
-                System.err.println("Parameter file doesn't exist.");
-                usage(progName);
-            } catch (IOException e) {
-                System.err.println("IO error: " + e);
-                usage(progName);
-            }
+        // answer the batch queries instead of the origins and destinations of the map
+        if (queryFilename != null) {
+            runBatch(newEngine(map, cacheSize, tourSolver), queryFilename, threadNum, outputFilename);
+            return;
         }
 
+        // route every origin through one flow field from the destinations
+        if (isAgents) {
+            runAgents(map, outputFilename);
+            return;
+        }
 
-        //
-        // Construct map
-        //
-
-        PathMap map = new PathMap();
-        // load map
-        map.initMap(rowNum, colNum, originCells, destCells, impassableCells, terrainCells, waypointCells);
-        map.isVisu = isVisu;
-
-        // display it
-        map.draw();
+        // answer the queries sent to the server until the process is stopped
+        if (serverPort >= 0) {
+            runServer(newEngine(map, cacheSize, tourSolver), serverPort, threadNum);
+            return;
+        }
 
         //
         // Find path
         //
 
         // setup path finding algorithm
-        PathFinder pathFinder = new DijkstraPathFinder(map);
+        // a compact map is searched without storing its edges
+        PathFinder pathFinder;
+        if (map.isCompact) {
+            GridDijkstraPathFinder gridFinder = new GridDijkstraPathFinder(map, new GridGraph(map));
+            gridFinder.setTourSolver(tourSolver);
+            pathFinder = gridFinder;
+        } else {
+            DijkstraPathFinder dijkstraFinder = new DijkstraPathFinder(map);
+            dijkstraFinder.setTourSolver(tourSolver);
+            pathFinder = dijkstraFinder;
+        }
 
         outStream.println(pathFinder.getClass().getSimpleName() + " is finding a path.");
 
+        // a large path is streamed to the output file instead of being built and printed
+        if (map.isCompact && outputFilename != null && !isVisu) {
+            streamPath((GridDijkstraPathFinder) pathFinder, map, outputFilename, pathFormat);
+            return;
+        }
+
         // find path
         List<Coordinate> path = pathFinder.findPath();
 
@@ -312,25 +330,16 @@ class PathFinderTester {
             outStream.println("");
             // This is optional, more for your own curiousity (not tested)
             outStream.println("Number of coordinates visited = " + pathFinder.coordinatesExplored());
+            printTourBound(map.isCompact ? ((GridDijkstraPathFinder) pathFinder).lastTour()
+                    : ((DijkstraPathFinder) pathFinder).lastTour());
 
             // display the path on screen
             map.drawPath(path);
 
             // see if we need to output to file also
             if (outputFilename != null) {
-                try {
-                    PrintWriter writer = new PrintWriter(new FileWriter(outputFilename));
-                    it = path.iterator();
-                    if (it.hasNext()) {
-                        Coordinate coord = it.next();
-                        writer.print("(" + coord.getRow() + "," + coord.getColumn() + ")");
-                    }
-                    while (it.hasNext()) {
-                        Coordinate coord = it.next();
-                        writer.print(" (" + coord.getRow() + "," + coord.getColumn() + ")");
-                    }
-                    writer.println("");
-                    writer.close();
+                try (PathWriter writer = new PathWriter(new FileOutputStream(outputFilename), pathFormat)) {
+                    writer.write(path);
                 } catch (FileNotFoundException e) {
                     System.err.println("Parameter file doesn't exist.");
                     usage(progName);
@@ -341,4 +350,227 @@ class PathFinderTester {
             }
         }
     } //end of main.
+
+
+    /**
+     * Find the path between the origins and destinations of the map and write it to a file as
+     * it is traced back, without building it as a list or printing it.
+     *
+     * @param pathFinder     the finder of the compact map
+     * @param map            the map
+     * @param outputFilename file to write the path to
+     * @param pathFormat     format of the path in the file
+     */
+    protected static void streamPath(GridDijkstraPathFinder pathFinder, PathMap map, String outputFilename,
+                                     PathWriter.Format pathFormat) {
+        PathQuery query = new PathQuery(map.originCells, map.destCells,
+                map.waypointCells != null ? map.waypointCells : new ArrayList<>());
+        int cost;
+        try (PathWriter writer = new PathWriter(new FileOutputStream(outputFilename), pathFormat)) {
+            cost = pathFinder.writePath(query, writer);
+        } catch (IOException e) {
+            System.err.println("IO Error: " + e);
+            usage(progName);
+            return;
+        }
+        if (cost == PathResult.NO_PATH) {
+            outStream.println("No path found.");
+        } else {
+            outStream.println("Total cost: " + cost);
+            outStream.println("A path has been found and written to " + outputFilename + ".");
+            outStream.println("Number of coordinates visited = " + pathFinder.coordinatesExplored());
+            printTourBound(pathFinder.lastTour());
+        }
+    } // end of streamPath()
+
+
+    /**
+     * Print the lower bound of a waypoint order picked by a heuristic and the gap of the path
+     * cost to it. Nothing is printed for an order known to be optimal.
+     *
+     * @param tour the waypoint tour of the path, or null
+     */
+    protected static void printTourBound(WaypointTour tour) {
+        if (tour != null && !tour.isOptimal()) {
+            outStream.printf("Waypoint order found by a heuristic: lower bound = %d, gap = %.2f%%%n",
+                    tour.getLowerBound(), 100 * tour.gap());
+        }
+    } // end of printTourBound()
+
+
+    /**
+     * Parse the text parameter, terrain and waypoint files into a map, with a
+     * {@link MapTextParser}.
+     *
+     * @param paraFilename     the parameter file
+     * @param terrainFilename  the terrain file, or null
+     * @param waypointFilename the waypoint file, or null
+     * @param isCompact        whether to store the map compactly
+     * @return the map
+     * @throws IOException              if a file cannot be read
+     * @throws IllegalArgumentException if a file is malformed
+     */
+    protected static PathMap readTextMap(String paraFilename, String terrainFilename, String waypointFilename,
+                                         boolean isCompact) throws IOException {
+        return new MapTextParser().parse(Paths.get(paraFilename),
+                terrainFilename != null ? Paths.get(terrainFilename) : null,
+                waypointFilename != null ? Paths.get(waypointFilename) : null, isCompact);
+    } // end of readTextMap()
+
+
+    /**
+     * Create the engine that answers the queries of -b and -s.
+     *
+     * @param map        the loaded map
+     * @param cacheSize  number of results cached, 0 for none
+     * @param tourSolver picks the waypoint order of every query, or null for the default
+     * @return the engine
+     */
+    protected static PathQueryEngine newEngine(PathMap map, int cacheSize, TourSolver tourSolver) {
+        PathQueryEngine engine = new PathQueryEngine(map, new GridGraph(map), (finderMap, graph) -> {
+            AStarPathFinder finder = new AStarPathFinder(finderMap, graph);
+            finder.setTourSolver(tourSolver);
+            return finder;
+        });
+        if (cacheSize > 0) {
+            engine.setCache(new PathResultCache(map, cacheSize));
+        }
+        return engine;
+    } // end of newEngine()
+
+
+    /**
+     * Route every origin of the map on its own to its nearest destination, by following one
+     * {@link FlowField} searched from all destinations, and write one result line per origin.
+     *
+     * @param map            the loaded map
+     * @param outputFilename file to write the results to, or null for the screen
+     */
+    protected static void runAgents(PathMap map, String outputFilename) {
+        FlowField field = new FlowField(map);
+        try (PrintWriter writer = outputFilename != null
+                ? new PrintWriter(new BufferedWriter(new FileWriter(outputFilename)))
+                : new PrintWriter(new BufferedWriter(new OutputStreamWriter(outStream)))) {
+            for (Coordinate origin : map.originCells) {
+                writer.println(field.pathFrom(Collections.singletonList(origin)).toLine());
+            }
+        } catch (IOException e) {
+            System.err.println("IO Error: " + e);
+            usage(progName);
+        }
+    } // end of runAgents()
+
+
+    /**
+     * Answer every query of a query file on a pool of threads and write one result line per
+     * query, in the order of the file: the cost and the path, "No path found." or the error.
+     *
+     * @param engine         answers the queries
+     * @param queryFilename  the query file
+     * @param threadNum      number of threads
+     * @param outputFilename file to write the results to, or null for the screen
+     */
+    protected static void runBatch(PathQueryEngine engine, String queryFilename, int threadNum, String outputFilename) {
+        ExecutorService pool = Executors.newFixedThreadPool(threadNum);
+        try (BufferedReader reader = new BufferedReader(new FileReader(queryFilename));
+             PrintWriter writer = outputFilename != null
+                     ? new PrintWriter(new BufferedWriter(new FileWriter(outputFilename)))
+                     : new PrintWriter(new BufferedWriter(new OutputStreamWriter(outStream)))) {
+            engine.findPaths(new QueryIterator(reader), pool, threadNum * 4, new PathQueryEngine.BatchListener() {
+                @Override
+                public void onResult(int index, PathQuery query, PathResult result) {
+                    writer.println(result.toLine());
+                }
+
+                @Override
+                public void onError(int index, PathQuery query, RuntimeException error) {
+                    writer.println("Error: " + error.getMessage());
+                }
+            });
+        } catch (FileNotFoundException e) {
+            System.err.println("Query file doesn't exist.");
+            usage(progName);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("IO error: " + e);
+            usage(progName);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage(progName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+    } // end of runBatch()
+
+
+    /**
+     * Run the local query server on the map until the process is stopped, and print its
+     * counters when it stops.
+     *
+     * @param engine     answers the queries
+     * @param port       the port, 0 for any free port
+     * @param searchNum  largest number of searches running at once
+     */
+    protected static void runServer(PathQueryEngine engine, int port, int searchNum) {
+        try {
+            PathQueryServer server = new PathQueryServer(engine, port, searchNum);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> outStream.println(server.stats())));
+            server.start();
+            outStream.println("Listening on 127.0.0.1:" + server.getPort());
+            server.join();
+        } catch (IOException e) {
+            System.err.println("Cannot start the server: " + e);
+            usage(progName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    } // end of runServer()
+
+
+    /**
+     * Reads the queries of a query file one line at a time, skipping blank lines.
+     */
+    protected static class QueryIterator implements Iterator<PathQuery> {
+        private BufferedReader reader;
+        private String nextLine;
+        private int lineNum = 0;
+
+        public QueryIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (nextLine == null) {
+                    nextLine = reader.readLine();
+                    if (nextLine == null) {
+                        return false;
+                    }
+                    lineNum++;
+                    if (nextLine.trim().isEmpty()) {
+                        nextLine = null;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public PathQuery next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = nextLine;
+            nextLine = null;
+            try {
+                return PathQuery.parse(line);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Query line " + lineNum + ": " + e.getMessage());
+            }
+        }
+    } // end of class QueryIterator
 }
@@ -0,0 +1,43 @@
+package map;
+
+/**
+ * A graph over the cells of a {@link PathMap}, numbered as {@code r * sizeC + c}, that the
+ * search engines read neighbours from without creating objects.
+ */
+public interface CellGraph {
+    /**
+     * Largest number of neighbours of a cell.
+     */
+    public static final int MAX_DEGREE = 4;
+
+    /**
+     * @return the number of cell ids, rows times columns
+     */
+    public abstract int cellCount();
+
+    /**
+     * @return the number of columns, to turn cell ids into rows and columns
+     */
+    public abstract int columns();
+
+    /**
+     * Write the out-neighbours of a cell and the weights of the edges to them.
+     *
+     * @param cell    a cell id
+     * @param cells   array of at least {@link #MAX_DEGREE} entries for the neighbours
+     * @param weights array of at least {@link #MAX_DEGREE} entries for the edge weights
+     * @return the number of neighbours written
+     */
+    public abstract int neighbors(int cell, int[] cells, int[] weights);
+
+    /**
+     * Write the in-neighbours of a cell and the weights of the edges from them, which are
+     * the terrain cost of the cell.
+     *
+     * @param cell    a cell id
+     * @param cells   array of at least {@link #MAX_DEGREE} entries for the neighbours
+     * @param weights array of at least {@link #MAX_DEGREE} entries for the edge weights
+     * @return the number of neighbours written
+     */
+    public abstract int inNeighbors(int cell, int[] cells, int[] weights);
+} // end of interface CellGraph
@@ -0,0 +1,48 @@
+package map;
+
+/**
+ * A {@link Coordinate} of a compact {@link PathMap}, created by {@link PathMap#getCell(int, int)}.
+ * It keeps no state of its own: passability and terrain cost are read from and written to
+ * the compact storage of the map.
+ */
+class CellView extends Coordinate {
+
+    private PathMap map;
+
+    /**
+     * Construct the view of cell (r, c) of a compact map.
+     *
+     * @param map the compact map
+     * @param r   Row coordinate
+     * @param c   Column coordinate
+     */
+    CellView(PathMap map, int r, int c) {
+        super(r, c);
+        this.map = map;
+    } // end of CellView()
+
+    @Override
+    public void setImpassable(boolean impassable) {
+        map.impassable.set(r * map.sizeC + c, impassable);
+        map.changed(r, c);
+    }
+
+    @Override
+    public boolean getImpassable() {
+        return map.impassable.get(r * map.sizeC + c);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cost is not between 1 and 65535
+     */
+    @Override
+    public void setTerrainCost(int cost) {
+        map.storeCost(r * map.sizeC + c, cost);
+        map.changed(r, c);
+    }
+
+    @Override
+    public int getTerrainCost() {
+        return map.compactCost(r * map.sizeC + c);
+    }
+} // end of class CellView
@@ -102,7 +102,7 @@ public class Coordinate {
     public boolean equals(Object o) {
         if (this == o) return true;
 
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Coordinate)) return false;
 
         Coordinate coord = (Coordinate) o;
         return r == coord.getRow() && c == coord.getColumn();
@@ -117,6 +117,6 @@ public class Coordinate {
 
     @Override
     public String toString() {
-        return "(" + r + "," + c + "), " + isImpassable + ", " + terrainCost;
+        return "(" + r + "," + c + "), " + getImpassable() + ", " + getTerrainCost();
     } // end of toString()
 } // end of class Coordinate
@@ -1,87 +1,388 @@
 package map;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Set;
 
 /**
- * The adjacency list representation of the path map.
+ * The adjacency representation of the path map, in fixed-stride sparse row form.
+ * Every cell is numbered as {@code r * sizeC + c} and owns {@link CellGraph#MAX_DEGREE} edge
+ * slots starting at {@code cell * MAX_DEGREE} in the {@code targets} and {@code weights} arrays,
+ * of which the first {@code degrees[cell]} hold its out-edges, so the graph takes no object per
+ * node or per edge. Since every cell keeps room for all its neighbours, a change of the
+ * passability or terrain cost of one cell is applied by {@link #updateCell(int, int)}, which
+ * rewrites the edges of that cell and of its four neighbours only.
  */
-public class Graph {
+public class Graph implements CellGraph, MapChangeListener {
 
     private PathMap map;
-    private Map<Coordinate, LinkedList<Edge>> nodeList;
+    // Number of rows and columns of the map
+    private int sizeR;
+    private int sizeC;
+    // Number of out-edges of every cell
+    private byte[] degrees;
+    // Cell each edge leads to
+    private int[] targets;
+    // Weight of each edge, the terrain cost of the cell it leads to
+    private int[] weights;
+    // The same edges grouped by the cell they lead to, built by initReverseGraph()
+    private byte[] reverseDegrees;
+    private int[] reverseSources;
+    private int[] reverseWeights;
+    // Passable cells, created the first time getNodes() is called
+    private Set<Coordinate> nodes;
 
     public Graph(PathMap map) {
         this.map = map;
-        nodeList = new HashMap<>();
+        sizeR = map.sizeR;
+        sizeC = map.sizeC;
     }
 
     /**
-     * Create graph from the PathMap
+     * Create graph from the PathMap: write the out-edges of every cell into its slots.
      */
     public void initGraph() {
-        for (int r = 0; r < map.sizeR; r++) {
-            for (int c = 0; c < map.sizeC; c++) {
+        int cellCount = sizeR * sizeC;
+        degrees = new byte[cellCount];
+        targets = new int[cellCount * MAX_DEGREE];
+        weights = new int[cellCount * MAX_DEGREE];
+        for (int r = 0; r < sizeR; r++) {
+            for (int c = 0; c < sizeC; c++) {
                 initNode(r, c);
             }
         }
     }
 
     /**
-     * Initialize a node and it out-neighbors
+     * Write the out-edges of a node
      * @param r row number
      * @param c column number
      */
     private void initNode(int r, int c) {
-        Coordinate node = map.getCell(r, c);
-        if (node.getImpassable()) {
+        int cell = r * sizeC + c;
+        int edge = cell * MAX_DEGREE;
+        if (map.isPassable(r, c)) {
+            // Add passable up neighbor
+            edge = addEdge(r + 1, c, edge);
+            // Add passable down neighbor
+            edge = addEdge(r - 1, c, edge);
+            // Add passable left neighbor
+            edge = addEdge(r, c - 1, edge);
+            // Add passable right neighbor
+            edge = addEdge(r, c + 1, edge);
+        }
+        degrees[cell] = (byte) (edge - cell * MAX_DEGREE);
+    }
+
+    /**
+     * Add an edge to (r, c) if it is passable
+     * @return index after the added edge
+     */
+    private int addEdge(int r, int c, int edge) {
+        if (!map.isPassable(r, c)) {
+            return edge;
+        }
+        targets[edge] = r * sizeC + c;
+        weights[edge] = map.terrainCost(r, c);
+        return edge + 1;
+    }
+
+    /**
+     * Create the reversed adjacency from the out-edges built by {@link Graph#initGraph()}.
+     * Every edge from A to B is also listed under B with A as its source and the same weight,
+     * which is still the terrain cost of B, so a search that follows the reversed edges from
+     * a destination adds up the same costs as the forward search.
+     */
+    public void initReverseGraph() {
+        int cellCount = sizeR * sizeC;
+        reverseDegrees = new byte[cellCount];
+        reverseSources = new int[cellCount * MAX_DEGREE];
+        reverseWeights = new int[cellCount * MAX_DEGREE];
+        for (int cell = 0; cell < cellCount; cell++) {
+            for (int e = cell * MAX_DEGREE; e < endEdge(cell); e++) {
+                int in = targets[e] * MAX_DEGREE + reverseDegrees[targets[e]]++;
+                reverseSources[in] = cell;
+                reverseWeights[in] = weights[e];
+            }
+        }
+    }
+
+    /**
+     * Write the reversed in-edges of a node from the out-edges of its neighbours
+     */
+    private void initReverseNode(int r, int c) {
+        int cell = r * sizeC + c;
+        int in = cell * MAX_DEGREE;
+        if (map.isPassable(r, c)) {
+            in = addInEdge(r + 1, c, cell, in);
+            in = addInEdge(r - 1, c, cell, in);
+            in = addInEdge(r, c - 1, cell, in);
+            in = addInEdge(r, c + 1, cell, in);
+        }
+        reverseDegrees[cell] = (byte) (in - cell * MAX_DEGREE);
+    }
+
+    /**
+     * Add an in-edge from (r, c) if it is passable
+     * @return index after the added in-edge
+     */
+    private int addInEdge(int r, int c, int cell, int in) {
+        if (!map.isPassable(r, c)) {
+            return in;
+        }
+        reverseSources[in] = r * sizeC + c;
+        reverseWeights[in] = map.terrainCost(cell / sizeC, cell % sizeC);
+        return in + 1;
+    }
+
+    //
+    // Local updates
+    //
+
+    /**
+     * Apply a change of the passability or terrain cost of (r, c) to the graph in O(1): the
+     * out-edges of the cell and of its neighbours are written again, and so are their
+     * reversed in-edges if the reversed graph has been built.
+     * @param r row number
+     * @param c column number
+     * @throws IllegalStateException if {@link #initGraph()} has not been called
+     */
+    public void updateCell(int r, int c) {
+        checkBuilt();
+        updateNode(r, c);
+        updateNode(r + 1, c);
+        updateNode(r - 1, c);
+        updateNode(r, c - 1);
+        updateNode(r, c + 1);
+        nodes = null;
+    }
+
+    private void updateNode(int r, int c) {
+        if (!map.isIn(r, c)) {
             return;
         }
-        LinkedList<Edge> edges = new LinkedList<>();
-        // Add passable up neighbor
-        if (map.isPassable(r + 1, c)) {
-            Coordinate up = map.getCell(r + 1, c);
-            edges.add(new Edge(node, up, up.getTerrainCost()));
+        initNode(r, c);
+        if (reverseDegrees != null) {
+            initReverseNode(r, c);
         }
-        // Add passable down neighbor
-        if (map.isPassable(r - 1, c)) {
-            Coordinate down = map.getCell(r - 1, c);
-            edges.add(new Edge(node, down, down.getTerrainCost()));
+    }
+
+    /**
+     * Keep the graph up to date with the map, once it is registered with
+     * {@link PathMap#addChangeListener(MapChangeListener)}. Changes before
+     * {@link #initGraph()} are skipped, as it reads the map as it is then.
+     */
+    @Override
+    public void cellChanged(int r, int c, long version) {
+        if (degrees != null) {
+            updateCell(r, c);
         }
-        // Add passable left neighbor
-        if (map.isPassable(r, c - 1)) {
-            Coordinate left = map.getCell(r, c - 1);
-            edges.add(new Edge(node, left, left.getTerrainCost()));
+    }
+
+    /**
+     * Make (r,c) impassable or passable on the map and update the graph.
+     * @param r row index
+     * @param c col index
+     * @param impassable whether the cell is impassable
+     * @throws IllegalStateException if {@link #initGraph()} has not been called
+     */
+    public void setImpassable(int r, int c, boolean impassable) {
+        checkBuilt();
+        map.setImpassable(r, c, impassable);
+        updateUnlessListening(r, c);
+    }
+
+    /**
+     * Change the terrain cost of (r,c) on the map and update the graph.
+     * @param r row index
+     * @param c col index
+     * @param cost the terrain cost, 1 or more
+     * @throws IllegalStateException if {@link #initGraph()} has not been called
+     */
+    public void setTerrainCost(int r, int c, int cost) {
+        checkBuilt();
+        map.setTerrainCost(r, c, cost);
+        updateUnlessListening(r, c);
+    }
+
+    /**
+     * Update the graph after a change made through it, unless the map already told it as a
+     * registered listener.
+     */
+    private void updateUnlessListening(int r, int c) {
+        if (!map.hasChangeListener(this)) {
+            updateCell(r, c);
         }
-        // Add passable right neighbor
-        if (map.isPassable(r, c + 1)) {
-            Coordinate right = map.getCell(r, c + 1);
-            edges.add(new Edge(node, right, right.getTerrainCost()));
+    }
+
+    private void checkBuilt() {
+        if (degrees == null) {
+            throw new IllegalStateException("The graph has not been built, call initGraph() first.");
         }
-        if (edges.isEmpty()) {
-            nodeList.put(node, null);
-        } else {
-            nodeList.put(node, edges);
+    }
+
+    //
+    // Primitive access by cell id
+    //
+
+    @Override
+    public int cellCount() {
+        return degrees.length;
+    }
+
+    @Override
+    public int columns() {
+        return sizeC;
+    }
+
+    @Override
+    public int neighbors(int cell, int[] cells, int[] weights) {
+        int n = 0;
+        for (int e = cell * MAX_DEGREE; e < endEdge(cell); e++, n++) {
+            cells[n] = targets[e];
+            weights[n] = this.weights[e];
+        }
+        return n;
+    }
+
+    /**
+     * Write the in-neighbours of a cell, after {@link Graph#initReverseGraph()}
+     */
+    @Override
+    public int inNeighbors(int cell, int[] cells, int[] weights) {
+        if (reverseDegrees == null) {
+            throw new IllegalStateException("The reversed graph has not been built.");
         }
+        int n = 0;
+        for (int e = cell * MAX_DEGREE; e < endInEdge(cell); e++, n++) {
+            cells[n] = reverseSources[e];
+            weights[n] = reverseWeights[e];
+        }
+        return n;
+    }
+
+    /**
+     * @param cell a cell id
+     * @return index of the first out-edge of the cell
+     */
+    public int firstEdge(int cell) {
+        return cell * MAX_DEGREE;
+    }
+
+    /**
+     * @param cell a cell id
+     * @return index after the last out-edge of the cell
+     */
+    public int endEdge(int cell) {
+        return cell * MAX_DEGREE + degrees[cell];
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the cell the edge leads to
+     */
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the weight of the edge
+     */
+    public int weight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * @param cell a cell id
+     * @return index of the first reversed in-edge of the cell, after {@link Graph#initReverseGraph()}
+     */
+    public int firstInEdge(int cell) {
+        return cell * MAX_DEGREE;
+    }
+
+    /**
+     * @param cell a cell id
+     * @return index after the last reversed in-edge of the cell
+     */
+    public int endInEdge(int cell) {
+        return cell * MAX_DEGREE + reverseDegrees[cell];
+    }
+
+    /**
+     * @param inEdge a reversed in-edge index
+     * @return the cell the edge comes from
+     */
+    public int source(int inEdge) {
+        return reverseSources[inEdge];
     }
 
+    /**
+     * @param inEdge a reversed in-edge index
+     * @return the weight of the edge
+     */
+    public int inWeight(int inEdge) {
+        return reverseWeights[inEdge];
+    }
+
+    //
+    // Access by Coordinate
+    //
+
     /**
      * Get all nodes of the graph
      * @return a set of all the nodes in the graph
      */
     public Set<Coordinate> getNodes() {
-        return nodeList.keySet();
+        if (nodes == null) {
+            Set<Coordinate> passable = new HashSet<>();
+            for (int r = 0; r < map.sizeR; r++) {
+                for (int c = 0; c < map.sizeC; c++) {
+                    if (map.isPassable(r, c)) {
+                        passable.add(map.getCell(r, c));
+                    }
+                }
+            }
+            nodes = Collections.unmodifiableSet(passable);
+        }
+        return nodes;
     }
 
     /**
      * Get all the neighboring {@link Edge}s of a given node
      * @param node a given node ({@link Coordinate}
-     * @return a {@link LinkedList} of neighboring {@link Edge}s
+     * @return a {@link LinkedList} of neighboring {@link Edge}s, or null when it has none
      */
     public LinkedList<Edge> getNeighbors(Coordinate node) {
-        return nodeList.get(node);
+        int cell = node.getRow() * sizeC + node.getColumn();
+        if (degrees[cell] == 0) {
+            return null;
+        }
+        LinkedList<Edge> edges = new LinkedList<>();
+        for (int e = cell * MAX_DEGREE; e < endEdge(cell); e++) {
+            edges.add(new Edge(node, map.getCell(targets[e] / sizeC, targets[e] % sizeC), weights[e]));
+        }
+        return edges;
+    }
+
+    /**
+     * Get the reversed in-edges of a given node, after {@link Graph#initReverseGraph()}
+     * @param node a given node ({@link Coordinate}
+     * @return a {@link LinkedList} of {@link Edge}s from the node to its in-neighbors,
+     * weighted by the terrain cost of the node, or null when it has none
+     */
+    public LinkedList<Edge> getInNeighbors(Coordinate node) {
+        int cell = node.getRow() * sizeC + node.getColumn();
+        if (reverseDegrees[cell] == 0) {
+            return null;
+        }
+        LinkedList<Edge> edges = new LinkedList<>();
+        for (int e = cell * MAX_DEGREE; e < endInEdge(cell); e++) {
+            int from = reverseSources[e];
+            edges.add(new Edge(node, map.getCell(from / sizeC, from % sizeC), reverseWeights[e]));
+        }
+        return edges;
     }
 
 }
@@ -0,0 +1,175 @@
+package map;
+
+/**
+ * Implicit graph of the 4-connected grid of a {@link PathMap}. No edge is stored: the
+ * neighbours of a cell and their weights are worked out on every call from one compact array
+ * holding the terrain cost of every cell, or 0 for impassable cells, so the graph takes one
+ * byte per cell (two if a terrain cost is above 255). The graph of a compact map stores
+ * nothing at all and reads the storage of the map, so it also sees later changes to it; the
+ * copied array follows the changes of the map once the graph is registered with
+ * {@link PathMap#addChangeListener(MapChangeListener)}.
+ */
+public class GridGraph implements CellGraph, MapChangeListener {
+
+    // Largest terrain cost kept in a byte, and in a short
+    private static final int MAX_BYTE_COST = PathMap.MAX_BYTE_COST;
+    private static final int MAX_SHORT_COST = PathMap.MAX_SHORT_COST;
+
+    private PathMap map;
+    private int sizeR;
+    private int sizeC;
+    // The compact map whose storage is read, null if the costs were copied
+    private PathMap compactMap;
+    // Unsigned terrain cost of every cell, 0 if impassable; only one of them is used
+    private byte[] byteCosts;
+    private short[] shortCosts;
+
+    /**
+     * Copy the passability and terrain costs of a map into the compact array, or read them
+     * from the map if it is compact.
+     *
+     * @param map the map
+     */
+    public GridGraph(PathMap map) {
+        this.map = map;
+        sizeR = map.sizeR;
+        sizeC = map.sizeC;
+        if (map.cells == null) {
+            compactMap = map;
+            return;
+        }
+        int maxCost = map.maxTerrainCost();
+        if (maxCost > MAX_SHORT_COST) {
+            throw new IllegalArgumentException(
+                    "Terrain costs above " + MAX_SHORT_COST + " are not supported by the implicit grid graph.");
+        }
+        if (maxCost <= MAX_BYTE_COST) {
+            byteCosts = new byte[sizeR * sizeC];
+        } else {
+            shortCosts = new short[sizeR * sizeC];
+        }
+        for (int r = 0; r < sizeR; r++) {
+            for (int c = 0; c < sizeC; c++) {
+                copyCost(r, c);
+            }
+        }
+    } // end of GridGraph()
+
+    /**
+     * Copy the terrain cost of (r, c) into the compact array, or 0 if it is impassable,
+     * widening the array to shorts when the cost does not fit in a byte.
+     */
+    private void copyCost(int r, int c) {
+        int cost = map.isPassable(r, c) ? map.terrainCost(r, c) : 0;
+        if (cost > MAX_SHORT_COST) {
+            throw new IllegalArgumentException(
+                    "Terrain costs above " + MAX_SHORT_COST + " are not supported by the implicit grid graph.");
+        }
+        if (byteCosts != null && cost > MAX_BYTE_COST) {
+            shortCosts = new short[byteCosts.length];
+            for (int i = 0; i < byteCosts.length; i++) {
+                shortCosts[i] = (short) (byteCosts[i] & MAX_BYTE_COST);
+            }
+            byteCosts = null;
+        }
+        if (byteCosts != null) {
+            byteCosts[r * sizeC + c] = (byte) cost;
+        } else {
+            shortCosts[r * sizeC + c] = (short) cost;
+        }
+    } // end of copyCost()
+
+    /**
+     * Copy the new passability and terrain cost of a changed cell in O(1); the graph of a
+     * compact map reads them from the map already.
+     */
+    @Override
+    public void cellChanged(int r, int c, long version) {
+        if (compactMap == null) {
+            copyCost(r, c);
+        }
+    }
+
+    @Override
+    public int cellCount() {
+        return sizeR * sizeC;
+    }
+
+    @Override
+    public int columns() {
+        return sizeC;
+    }
+
+    /**
+     * @param cell a cell id
+     * @return the terrain cost of the cell, 0 if it is impassable
+     */
+    public int cost(int cell) {
+        if (compactMap != null) {
+            return compactMap.impassable.get(cell) ? 0 : compactMap.compactCost(cell);
+        }
+        return byteCosts != null ? byteCosts[cell] & MAX_BYTE_COST : shortCosts[cell] & MAX_SHORT_COST;
+    }
+
+    @Override
+    public int neighbors(int cell, int[] cells, int[] weights) {
+        if (cost(cell) == 0) {
+            return 0;
+        }
+        int r = cell / sizeC;
+        int c = cell - r * sizeC;
+        int n = 0;
+        // Same order as the edges of Graph: up, down, left, right
+        if (r + 1 < sizeR) {
+            n = add(cell + sizeC, cost(cell + sizeC), cells, weights, n);
+        }
+        if (r > 0) {
+            n = add(cell - sizeC, cost(cell - sizeC), cells, weights, n);
+        }
+        if (c > 0) {
+            n = add(cell - 1, cost(cell - 1), cells, weights, n);
+        }
+        if (c + 1 < sizeC) {
+            n = add(cell + 1, cost(cell + 1), cells, weights, n);
+        }
+        return n;
+    }
+
+    @Override
+    public int inNeighbors(int cell, int[] cells, int[] weights) {
+        int weight = cost(cell);
+        if (weight == 0) {
+            return 0;
+        }
+        int r = cell / sizeC;
+        int c = cell - r * sizeC;
+        int n = 0;
+        if (r + 1 < sizeR && cost(cell + sizeC) != 0) {
+            n = add(cell + sizeC, weight, cells, weights, n);
+        }
+        if (r > 0 && cost(cell - sizeC) != 0) {
+            n = add(cell - sizeC, weight, cells, weights, n);
+        }
+        if (c > 0 && cost(cell - 1) != 0) {
+            n = add(cell - 1, weight, cells, weights, n);
+        }
+        if (c + 1 < sizeC && cost(cell + 1) != 0) {
+            n = add(cell + 1, weight, cells, weights, n);
+        }
+        return n;
+    }
+
+    /**
+     * Write a neighbour if its weight shows it is passable
+     * @return the number of neighbours written so far
+     */
+    private int add(int neighbor, int weight, int[] cells, int[] weights, int n) {
+        if (weight == 0) {
+            return n;
+        }
+        cells[n] = neighbor;
+        weights[n] = weight;
+        return n + 1;
+    }
+
+} // end of class GridGraph
@@ -0,0 +1,42 @@
+package map;
+
+/**
+ * A {@link Coordinate} of the cells grid of a {@link PathMap}, which tells the map about every
+ * change of its passability or terrain cost, so that the map version moves on and its
+ * listeners are told.
+ */
+class MapCell extends Coordinate {
+
+    private PathMap map;
+
+    /**
+     * Construct cell (r, c) of a map.
+     *
+     * @param map the map
+     * @param r   Row coordinate
+     * @param c   Column coordinate
+     */
+    MapCell(PathMap map, int r, int c) {
+        super(r, c);
+        this.map = map;
+    } // end of MapCell()
+
+    @Override
+    public void setImpassable(boolean impassable) {
+        super.setImpassable(impassable);
+        map.changed(r, c);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cost is below 1, which the graphs would take
+     *                                  for an impassable cell
+     */
+    @Override
+    public void setTerrainCost(int cost) {
+        if (cost < 1) {
+            throw new IllegalArgumentException("Terrain cost must be 1 or more.");
+        }
+        super.setTerrainCost(cost);
+        map.changed(r, c);
+    }
+} // end of class MapCell
@@ -0,0 +1,17 @@
+package map;
+
+/**
+ * Receives the changes of the passability or terrain cost of the cells of a {@link PathMap},
+ * once registered with {@link PathMap#addChangeListener(MapChangeListener)}, so that graphs,
+ * planners and caches built from the map can follow it instead of being built again.
+ */
+public interface MapChangeListener {
+    /**
+     * Called on the thread that changed the map, after the change.
+     *
+     * @param r       row of the changed cell
+     * @param c       column of the changed cell
+     * @param version the version of the map after the change
+     */
+    public abstract void cellChanged(int r, int c, long version);
+} // end of interface MapChangeListener
@@ -0,0 +1,274 @@
+package map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Binary file format of a {@link PathMap}, loaded by memory-mapping the file, so that a large
+ * map is read with a few bulk copies instead of parsing a line per cell.
+ * <p>
+ * All numbers are little-endian:
+ * <ul>
+ * <li>header of eight ints: the magic number "PMAP", the format version, the number of rows and
+ * of columns, the width of a terrain cost in bytes (0 if every cost is 1, 1 or 2), and the
+ * numbers of origins, destinations and waypoints;</li>
+ * <li>the origins, destinations and waypoints, each an int row and an int column;</li>
+ * <li>after padding to a multiple of 8 bytes, the impassable cells as a bitset of longs, bit
+ * {@code cell % 64} of long {@code cell / 64} set for an impassable cell id {@code r * cols + c};</li>
+ * <li>the unsigned terrain cost of every cell in cell id order, in the given width.</li>
+ * </ul>
+ * A loaded map is always compact.
+ */
+public class MapFile {
+
+    // "PMAP" in little-endian byte order
+    private static final int MAGIC = 'P' | 'M' << 8 | 'A' << 16 | 'P' << 24;
+    // Version written by this class, the only one it reads
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+    // Largest region copied from one mapping
+    private static final int CHUNK_BYTES = 1 << 30;
+
+    private MapFile() {
+    }
+
+    /**
+     * Check whether a file starts with the magic number of the format.
+     *
+     * @param file the file
+     * @return true if it is a binary map file
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isMapFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    } // end of isMapFile()
+
+    /**
+     * Load a binary map file.
+     *
+     * @param file the file
+     * @return the compact map
+     * @throws IOException if the file cannot be read, or is not a map file of a supported version
+     */
+    public static PathMap read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is too short for a map file.");
+            }
+            ByteBuffer header = map(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a map file.");
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Map file version " + version + " is not supported, only " + FORMAT_VERSION + ".");
+            }
+            int rowNum = header.getInt();
+            int colNum = header.getInt();
+            int costWidth = header.getInt();
+            int originNum = header.getInt();
+            int destNum = header.getInt();
+            int waypointNum = header.getInt();
+            if (rowNum <= 0 || colNum <= 0 || (long) rowNum * colNum > Integer.MAX_VALUE) {
+                throw new IOException("Map dimensions " + rowNum + " " + colNum + " are not supported.");
+            }
+            if (costWidth < 0 || costWidth > 2 || originNum < 0 || destNum < 0 || waypointNum < 0) {
+                throw new IOException(file + " has a malformed header.");
+            }
+            int cellCount = rowNum * colNum;
+            long terminalBytes = 8L * ((long) originNum + destNum + waypointNum);
+            long bitsetStart = align(HEADER_BYTES + terminalBytes);
+            int wordNum = (cellCount + 63) / 64;
+            long costStart = bitsetStart + 8L * wordNum;
+            if (channel.size() != costStart + (long) costWidth * cellCount) {
+                throw new IOException(file + " has " + channel.size() + " bytes, not the "
+                        + (costStart + (long) costWidth * cellCount) + " of its header.");
+            }
+
+            ByteBuffer terminals = map(channel, HEADER_BYTES, terminalBytes);
+            List<Coordinate> originCells = readCoordinates(terminals, originNum, rowNum, colNum, "Origin");
+            List<Coordinate> destCells = readCoordinates(terminals, destNum, rowNum, colNum, "Destination");
+            List<Coordinate> waypointCells = readCoordinates(terminals, waypointNum, rowNum, colNum, "Waypoint");
+
+            long[] words = new long[wordNum];
+            for (int done = 0; done < wordNum; ) {
+                int count = Math.min(wordNum - done, CHUNK_BYTES / 8);
+                map(channel, bitsetStart + 8L * done, 8L * count).asLongBuffer().get(words, done, count);
+                done += count;
+            }
+            BitSet impassable = BitSet.valueOf(words);
+            impassable.clear(cellCount, wordNum * 64);
+
+            byte[] byteCosts = null;
+            short[] shortCosts = null;
+            if (costWidth == 2) {
+                shortCosts = new short[cellCount];
+                for (int done = 0; done < cellCount; ) {
+                    int count = Math.min(cellCount - done, CHUNK_BYTES / 2);
+                    map(channel, costStart + 2L * done, 2L * count).asShortBuffer().get(shortCosts, done, count);
+                    done += count;
+                }
+            } else {
+                byteCosts = new byte[cellCount];
+                if (costWidth == 0) {
+                    Arrays.fill(byteCosts, (byte) 1);
+                }
+                for (int done = 0; costWidth == 1 && done < cellCount; ) {
+                    int count = Math.min(cellCount - done, CHUNK_BYTES);
+                    map(channel, costStart + done, count).get(byteCosts, done, count);
+                    done += count;
+                }
+            }
+
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (byteCosts != null ? byteCosts[cell] == 0 : shortCosts[cell] == 0) {
+                    throw new IOException("Terrain cost of " + cell / colNum + " " + cell % colNum + " is 0.");
+                }
+            }
+
+            PathMap map = new PathMap();
+            map.initCompactMap(rowNum, colNum, originCells, destCells, waypointCells, impassable, byteCosts, shortCosts);
+            return map;
+        }
+    } // end of read()
+
+    /**
+     * Write a map, compact or not, to a binary map file. The terminals are checked by the
+     * same rule as {@link #read(Path)}, so that every written file can be read again.
+     *
+     * @param map  the map
+     * @param file the file, replaced if it exists
+     * @throws IOException              if the file cannot be written
+     * @throws IllegalArgumentException if an origin, destination or waypoint is not in the map,
+     *                                  or a terrain cost is above 65535
+     */
+    public static void write(PathMap map, Path file) throws IOException {
+        int rowNum = map.sizeR;
+        int colNum = map.sizeC;
+        int cellCount = rowNum * colNum;
+        int maxCost = 1;
+        for (int r = 0; r < rowNum; r++) {
+            for (int c = 0; c < colNum; c++) {
+                maxCost = Math.max(maxCost, map.terrainCost(r, c));
+            }
+        }
+        if (maxCost > PathMap.MAX_SHORT_COST) {
+            throw new IllegalArgumentException("Terrain costs above " + PathMap.MAX_SHORT_COST + " are not supported by map files.");
+        }
+        int costWidth = maxCost == 1 ? 0 : maxCost <= PathMap.MAX_BYTE_COST ? 1 : 2;
+        List<Coordinate> waypointCells = map.waypointCells != null ? map.waypointCells : new ArrayList<>();
+        checkCoordinates(map, map.originCells, "Origin");
+        checkCoordinates(map, map.destCells, "Destination");
+        checkCoordinates(map, waypointCells, "Waypoint");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rowNum).putInt(colNum).putInt(costWidth)
+                    .putInt(map.originCells.size()).putInt(map.destCells.size()).putInt(waypointCells.size());
+            long written = HEADER_BYTES;
+            for (List<Coordinate> coords : List.of(map.originCells, map.destCells, waypointCells)) {
+                for (Coordinate coord : coords) {
+                    ensure(channel, buffer, 8);
+                    buffer.putInt(coord.getRow()).putInt(coord.getColumn());
+                    written += 8;
+                }
+            }
+            for (; written % 8 != 0; written++) {
+                ensure(channel, buffer, 1);
+                buffer.put((byte) 0);
+            }
+            for (int word = 0; word * 64 < cellCount; word++) {
+                long bits = 0;
+                for (int cell = word * 64; cell < Math.min(cellCount, word * 64 + 64); cell++) {
+                    if (!map.isPassable(cell / colNum, cell % colNum)) {
+                        bits |= 1L << (cell % 64);
+                    }
+                }
+                ensure(channel, buffer, 8);
+                buffer.putLong(bits);
+            }
+            for (int cell = 0; costWidth > 0 && cell < cellCount; cell++) {
+                ensure(channel, buffer, costWidth);
+                int cost = map.terrainCost(cell / colNum, cell % colNum);
+                if (costWidth == 1) {
+                    buffer.put((byte) cost);
+                } else {
+                    buffer.putShort((short) cost);
+                }
+            }
+            flush(channel, buffer);
+        }
+    } // end of write()
+
+    /**
+     * Read the next coordinates of the terminals section.
+     */
+    private static List<Coordinate> readCoordinates(ByteBuffer terminals, int count, int rowNum, int colNum,
+                                                    String kind) throws IOException {
+        List<Coordinate> coords = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int r = terminals.getInt();
+            int c = terminals.getInt();
+            if (r < 0 || r >= rowNum || c < 0 || c >= colNum) {
+                throw new IOException(kind + " " + r + " " + c + " is not in the map.");
+            }
+            coords.add(new Coordinate(r, c));
+        }
+        return coords;
+    }
+
+    /**
+     * Check that terminals of a map to write are in it, as {@link #readCoordinates} requires.
+     */
+    private static void checkCoordinates(PathMap map, List<Coordinate> coords, String kind) {
+        for (Coordinate coord : coords) {
+            if (!map.isIn(coord)) {
+                throw new IllegalArgumentException(kind + " " + coord.getRow() + " " + coord.getColumn() + " is not in the map.");
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long align(long position) {
+        return (position + 7) / 8 * 8;
+    }
+
+    /**
+     * Write the buffer out if it has less room left than needed.
+     */
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+} // end of class MapFile
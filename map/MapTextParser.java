@@ -0,0 +1,384 @@
+package map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parser of the text parameter, terrain and waypoint files of a map, reading bytes from a
+ * channel and writing the impassable cells and terrain costs straight into a bitset and a cost
+ * array, with no String, {@link Coordinate} or boxed number per line.
+ * <p>
+ * The formats are those the tester always read. The parameter file has the numbers of rows and
+ * columns on its first line, the origin pairs on the second, the destination pairs on the third
+ * and one impassable pair per line after that. A terrain file has a row, a column and a cost per
+ * line, and a waypoint file a row and a column per line. Numbers are separated by spaces or tabs.
+ * Lines that were skipped with a warning before are still skipped with one, now with their line
+ * and column; input that was rejected is rejected with an IllegalArgumentException naming the
+ * file, line and column. A parser keeps its buffers from one map to the next.
+ */
+public class MapTextParser {
+
+    // Bytes read from the channel at once
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    // Values, columns and validity of the tokens of the current line
+    private int[] values = new int[16];
+    private int[] columns = new int[16];
+    private boolean[] valid = new boolean[16];
+    private ReadableByteChannel channel;
+    private String name;
+    private boolean eof;
+    private int line;
+
+    // The map being parsed
+    private int rowNum;
+    private int colNum;
+    private BitSet impassable;
+    // Terrain cost of every cell, in the narrowest array that holds every cost so far
+    private byte[] byteCosts;
+    private short[] shortCosts;
+    private int[] intCosts;
+
+    /**
+     * Parse the files of a map.
+     *
+     * @param paraFile     the parameter file
+     * @param terrainFile  the terrain file, or null
+     * @param waypointFile the waypoint file, or null
+     * @param compact      whether to store the map compactly
+     * @return the map
+     * @throws IOException              if a file cannot be read
+     * @throws IllegalArgumentException if a file is malformed
+     */
+    public PathMap parse(Path paraFile, Path terrainFile, Path waypointFile, boolean compact) throws IOException {
+        try (FileChannel para = FileChannel.open(paraFile, StandardOpenOption.READ);
+             FileChannel terrain = terrainFile != null ? FileChannel.open(terrainFile, StandardOpenOption.READ) : null;
+             FileChannel waypoint = waypointFile != null ? FileChannel.open(waypointFile, StandardOpenOption.READ) : null) {
+            return parse(para, paraFile.toString(), terrain, String.valueOf(terrainFile), waypoint,
+                    String.valueOf(waypointFile), compact);
+        }
+    } // end of parse()
+
+    /**
+     * Parse the files of a map from channels, which are read to the end and not closed.
+     *
+     * @param para         the parameter file
+     * @param paraName     its name in messages
+     * @param terrain      the terrain file, or null
+     * @param terrainName  its name in messages
+     * @param waypoint     the waypoint file, or null
+     * @param waypointName its name in messages
+     * @param compact      whether to store the map compactly
+     * @return the map
+     * @throws IOException              if a channel cannot be read
+     * @throws IllegalArgumentException if a file is malformed
+     */
+    public PathMap parse(ReadableByteChannel para, String paraName, ReadableByteChannel terrain, String terrainName,
+                         ReadableByteChannel waypoint, String waypointName, boolean compact) throws IOException {
+        List<Coordinate> originCells = new ArrayList<>();
+        List<Coordinate> destCells = new ArrayList<>();
+        List<Coordinate> waypointCells = new ArrayList<>();
+        try {
+            parseParameters(para, paraName, originCells, destCells);
+            if (terrain != null) {
+                parseTerrain(terrain, terrainName, compact);
+            }
+            if (waypoint != null) {
+                parseWaypoints(waypoint, waypointName, waypointCells);
+            }
+            return build(originCells, destCells, waypointCells, compact);
+        } finally {
+            channel = null;
+            impassable = null;
+            byteCosts = null;
+            shortCosts = null;
+            intCosts = null;
+        }
+    } // end of parse()
+
+    private void parseParameters(ReadableByteChannel para, String paraName, List<Coordinate> originCells,
+                                 List<Coordinate> destCells) throws IOException {
+        start(para, paraName);
+        // read in row and column number
+        int count = readLine();
+        if (count != 2) {
+            throw error(1, "There should be two numbers representing the number of rows and columns.");
+        }
+        rowNum = value(0);
+        colNum = value(1);
+        if (rowNum <= 0 || colNum <= 0) {
+            throw error(columns[0], "Map dimensions cannot be 0 or less.");
+        }
+        if ((long) rowNum * colNum > Integer.MAX_VALUE) {
+            throw error(columns[0], "Map dimensions " + rowNum + " " + colNum + " are too large.");
+        }
+        impassable = new BitSet(rowNum * colNum);
+        byteCosts = new byte[rowNum * colNum];
+        Arrays.fill(byteCosts, (byte) 1);
+
+        // read in origin and destination coordinates
+        readCoordinates(originCells, "Origin");
+        readCoordinates(destCells, "Destination");
+
+        // read in impassable coordinates
+        while ((count = readLine()) >= 0) {
+            if (count != 2) {
+                warn("Impassable coordinates should be in pairs");
+                continue;
+            }
+            int r = value(0);
+            int c = value(1);
+            if (isIn(r, c)) {
+                impassable.set(r * colNum + c);
+            }
+        }
+    } // end of parseParameters()
+
+    /**
+     * Read the origin or destination line, if there is one.
+     */
+    private void readCoordinates(List<Coordinate> coords, String kind) throws IOException {
+        int count = readLine();
+        if (count < 0) {
+            return;
+        }
+        if (count < 2 || count % 2 != 0) {
+            warn(kind + " coordinates should be in pairs.");
+            return;
+        }
+        for (int i = 0; i < count; i += 2) {
+            int r = value(i);
+            int c = value(i + 1);
+            if (!isIn(r, c)) {
+                throw error(columns[i], kind
+                        + " coordinates cannot be less than 0 or greater than the number of rows or columns in map.");
+            }
+            coords.add(new Coordinate(r, c));
+        }
+    } // end of readCoordinates()
+
+    private void parseTerrain(ReadableByteChannel terrain, String terrainName, boolean compact) throws IOException {
+        start(terrain, terrainName);
+        int count;
+        while ((count = readLine()) >= 0) {
+            if (count != 3) {
+                warn("Terrain should be two coordinates and cost");
+                continue;
+            }
+            int cost = value(2);
+            if (cost < 1) {
+                warn("Terrain cost must be 1 or more");
+                continue;
+            }
+            int r = value(0);
+            int c = value(1);
+            if (!isIn(r, c)) {
+                continue;
+            }
+            if (compact && cost > PathMap.MAX_SHORT_COST) {
+                throw error(columns[2], "Terrain costs above " + PathMap.MAX_SHORT_COST + " are not supported by compact maps.");
+            }
+            storeCost(r * colNum + c, cost);
+        }
+    } // end of parseTerrain()
+
+    private void parseWaypoints(ReadableByteChannel waypoint, String waypointName, List<Coordinate> waypointCells)
+            throws IOException {
+        start(waypoint, waypointName);
+        int count;
+        while ((count = readLine()) >= 0) {
+            if (count != 2) {
+                warn("Waypoints should be two coordinates");
+                continue;
+            }
+            waypointCells.add(new Coordinate(value(0), value(1)));
+        }
+    } // end of parseWaypoints()
+
+    /**
+     * Store a terrain cost, widening the costs when it does not fit in their array.
+     */
+    private void storeCost(int cell, int cost) {
+        if (byteCosts != null && cost > PathMap.MAX_BYTE_COST) {
+            shortCosts = new short[byteCosts.length];
+            for (int i = 0; i < byteCosts.length; i++) {
+                shortCosts[i] = (short) (byteCosts[i] & PathMap.MAX_BYTE_COST);
+            }
+            byteCosts = null;
+        }
+        if (shortCosts != null && cost > PathMap.MAX_SHORT_COST) {
+            intCosts = new int[shortCosts.length];
+            for (int i = 0; i < shortCosts.length; i++) {
+                intCosts[i] = shortCosts[i] & PathMap.MAX_SHORT_COST;
+            }
+            shortCosts = null;
+        }
+        if (byteCosts != null) {
+            byteCosts[cell] = (byte) cost;
+        } else if (shortCosts != null) {
+            shortCosts[cell] = (short) cost;
+        } else {
+            intCosts[cell] = cost;
+        }
+    } // end of storeCost()
+
+    /**
+     * Create the map from the parsed cells: a compact map takes the arrays as they are, a map
+     * of {@link Coordinate}s gets only its impassable cells and costs other than 1 set.
+     */
+    private PathMap build(List<Coordinate> originCells, List<Coordinate> destCells, List<Coordinate> waypointCells,
+                          boolean compact) {
+        PathMap map = new PathMap();
+        if (compact) {
+            map.initCompactMap(rowNum, colNum, originCells, destCells, waypointCells, impassable, byteCosts, shortCosts);
+            return map;
+        }
+        map.initMap(rowNum, colNum, originCells, destCells, Collections.emptySet(), Collections.emptyMap(), waypointCells);
+        for (int cell = impassable.nextSetBit(0); cell >= 0; cell = impassable.nextSetBit(cell + 1)) {
+            map.cells[cell / colNum][cell % colNum].setImpassable(true);
+        }
+        for (int cell = 0; cell < rowNum * colNum; cell++) {
+            int cost = byteCosts != null ? byteCosts[cell] & PathMap.MAX_BYTE_COST
+                    : shortCosts != null ? shortCosts[cell] & PathMap.MAX_SHORT_COST : intCosts[cell];
+            if (cost != 1) {
+                map.cells[cell / colNum][cell % colNum].setTerrainCost(cost);
+            }
+        }
+        return map;
+    } // end of build()
+
+    private boolean isIn(int r, int c) {
+        return r >= 0 && r < rowNum && c >= 0 && c < colNum;
+    }
+
+    //
+    // Tokenizer
+    //
+
+    /**
+     * Start reading a new file.
+     */
+    private void start(ReadableByteChannel source, String sourceName) {
+        channel = source;
+        name = sourceName;
+        eof = false;
+        line = 0;
+        buffer.clear();
+        buffer.flip();
+    }
+
+    /**
+     * Read the whitespace separated numbers of the next line into values, noting the column
+     * of every token and whether it is a valid int.
+     *
+     * @return the number of tokens of the line, -1 at the end of the file
+     */
+    private int readLine() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        line++;
+        int count = 0;
+        int column = 0;
+        while (buffer.hasRemaining() || fill()) {
+            byte b = buffer.get();
+            column++;
+            if (b == '\n') {
+                return count;
+            }
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B) {
+                continue;
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+                columns = Arrays.copyOf(columns, count * 2);
+                valid = Arrays.copyOf(valid, count * 2);
+            }
+            columns[count] = column;
+            // parse the token up to the next whitespace
+            boolean negative = false;
+            boolean ok = true;
+            int digits = 0;
+            long value = 0;
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+            } else if (b >= '0' && b <= '9') {
+                value = b - '0';
+                digits++;
+            } else {
+                ok = false;
+            }
+            while (buffer.hasRemaining() || fill()) {
+                b = buffer.get(buffer.position());
+                if (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f' || b == 0x0B) {
+                    break;
+                }
+                buffer.get();
+                column++;
+                if (b >= '0' && b <= '9' && value <= Integer.MAX_VALUE + 1L) {
+                    value = value * 10 + (b - '0');
+                    digits++;
+                } else {
+                    ok = false;
+                }
+            }
+            value = negative ? -value : value;
+            valid[count] = ok && digits > 0 && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+            values[count] = (int) value;
+            count++;
+        }
+        return count;
+    } // end of readLine()
+
+    /**
+     * Read more bytes into the empty buffer.
+     *
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        buffer.clear();
+        int read = 0;
+        while (read == 0) {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of a token of the current line
+     * @throws IllegalArgumentException if the token is not an int
+     */
+    private int value(int token) {
+        if (!valid[token]) {
+            throw error(columns[token], "Expected a number.");
+        }
+        return values[token];
+    }
+
+    private IllegalArgumentException error(int column, String message) {
+        return new IllegalArgumentException(name + ":" + line + ":" + column + ": " + message);
+    }
+
+    private void warn(String message) {
+        System.err.println(name + ":" + line + ": " + message);
+    }
+
+} // end of class MapTextParser
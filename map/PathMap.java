@@ -1,6 +1,8 @@
 package map;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import map.StdDraw;
 import map.Coordinate;
@@ -31,6 +33,29 @@ public class PathMap {
     public List<Coordinate> waypointCells;
     // whether to visualise or not
     public boolean isVisu = true;
+    // whether initMap() stores the cells compactly instead of in the cells grid
+    public boolean isCompact = false;
+    // incremented on every change of the impassable cells or terrain costs
+    private final AtomicLong version = new AtomicLong();
+    // told about every change of a cell
+    private final CopyOnWriteArrayList<MapChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // bounds of the terrain costs of the passable cells, found by a scan on first use and
+    // widened by every later change, valid only if costBoundsKnown
+    private boolean costBoundsKnown = false;
+    private int minCost;
+    private int maxCost;
+
+    /**
+     * compact storage, indexed by cell id r * sizeC + c
+     */
+    // largest terrain cost kept in a byte, and in a short
+    static final int MAX_BYTE_COST = 0xFF;
+    static final int MAX_SHORT_COST = 0xFFFF;
+    // impassable cells
+    BitSet impassable;
+    // unsigned terrain cost of every cell, in bytes while every cost fits in one
+    byte[] byteCosts;
+    short[] shortCosts;
 
 
     /**
@@ -52,31 +77,104 @@ public class PathMap {
         originCells = oriCells;
         destCells = desCells;
         this.waypointCells = waypointCells;
+        forgetCostBounds();
+
+        if (isCompact) {
+            initCompactCells(impassableCells, terrainCells);
+            return;
+        }
 
         cells = new Coordinate[sizeR][sizeC];
 
-        // construct the coordinates in the grid and also update inforamtion about impassable
-        // and terrain costs.
+        // construct the coordinates in the grid
         for (int i = 0; i < sizeR; i++) {
             for (int j = 0; j < sizeC; j++) {
-                Coordinate coord = new Coordinate(i, j);
-                // add impassable cells
-                if (impassableCells.contains(coord)) {
-                    coord.setImpassable(true);
-                }
-                // add terrain information
-                // should not be both
-                if (terrainCells.containsKey(coord)) {
-                    int cost = terrainCells.get(coord).intValue();
-                    coord.setTerrainCost(cost);
-                }
-
-                cells[i][j] = coord;
+                cells[i][j] = new MapCell(this, i, j);
+            }
+        }
+        // update information about impassable and terrain costs, should not be both
+        for (Coordinate coord : impassableCells) {
+            if (isIn(coord)) {
+                cells[coord.getRow()][coord.getColumn()].setImpassable(true);
+            }
+        }
+        for (Map.Entry<Coordinate, Integer> entry : terrainCells.entrySet()) {
+            if (isIn(entry.getKey())) {
+                cells[entry.getKey().getRow()][entry.getKey().getColumn()].setTerrainCost(entry.getValue());
             }
         }
     } // end of initMap()
 
 
+    /**
+     * Store the cells in the impassable bitset and terrain cost array instead of creating a
+     * {@link Coordinate} per cell. The costs take one byte per cell, or two if one of them is
+     * above 255.
+     *
+     * @param impassableCells List of impassable coordinates.
+     * @param terrainCells    Map of terrain coordinates and their costs.
+     */
+    private void initCompactCells(Set<Coordinate> impassableCells, Map<Coordinate, Integer> terrainCells) {
+        cells = null;
+        int cellCount = sizeR * sizeC;
+        impassable = new BitSet(cellCount);
+        int maxCost = 1;
+        for (int cost : terrainCells.values()) {
+            maxCost = Math.max(maxCost, cost);
+        }
+        if (maxCost > MAX_SHORT_COST) {
+            throw new IllegalArgumentException("Terrain costs above " + MAX_SHORT_COST + " are not supported by compact maps.");
+        }
+        byteCosts = null;
+        shortCosts = null;
+        if (maxCost <= MAX_BYTE_COST) {
+            byteCosts = new byte[cellCount];
+            Arrays.fill(byteCosts, (byte) 1);
+        } else {
+            shortCosts = new short[cellCount];
+            Arrays.fill(shortCosts, (short) 1);
+        }
+        for (Coordinate coord : impassableCells) {
+            if (isIn(coord)) {
+                impassable.set(coord.getRow() * sizeC + coord.getColumn());
+            }
+        }
+        for (Map.Entry<Coordinate, Integer> entry : terrainCells.entrySet()) {
+            if (isIn(entry.getKey())) {
+                storeCost(entry.getKey().getRow() * sizeC + entry.getKey().getColumn(), entry.getValue());
+            }
+        }
+    } // end of initCompactCells()
+
+
+    /**
+     * Initialise a compact map from storage that is already filled in, e.g. read from a file.
+     *
+     * @param rowNum        Number of rows.
+     * @param colNum        Number of columns.
+     * @param oriCells      List of origin coordinates.
+     * @param desCells      List of destination coordinates.
+     * @param waypointCells List of waypoint coordinates.
+     * @param impassable    Impassable cells, by cell id.
+     * @param byteCosts     Unsigned terrain cost of every cell, or null if shortCosts is given.
+     * @param shortCosts    Unsigned terrain cost of every cell, or null if byteCosts is given.
+     */
+    void initCompactMap(int rowNum, int colNum, List<Coordinate> oriCells, List<Coordinate> desCells,
+                        List<Coordinate> waypointCells, BitSet impassable, byte[] byteCosts, short[] shortCosts) {
+        sizeR = rowNum;
+        sizeC = colNum;
+        originCells = oriCells;
+        destCells = desCells;
+        this.waypointCells = waypointCells;
+        isCompact = true;
+        cells = null;
+        this.impassable = impassable;
+        this.byteCosts = byteCosts;
+        this.shortCosts = shortCosts;
+        forgetCostBounds();
+    } // end of initCompactMap()
+
+
     //
     // Auxiliary functions
     //
@@ -111,11 +209,25 @@ public class PathMap {
      * Check if a coordinate (r,c) is passable/can be traversed.
      */
     public boolean isPassable(int r, int c) {
-        return isIn(r, c) && !cells[r][c].getImpassable();
+        if (!isIn(r, c)) {
+            return false;
+        }
+        return cells != null ? !cells[r][c].getImpassable() : !impassable.get(r * sizeC + c);
     } // end of isPassable()
 
     /**
-     * Get cell at (r,c)
+     * Get the terrain cost of (r,c), whether it is passable or not
+     * @param r row index
+     * @param c col index
+     * @return the terrain cost
+     */
+    public int terrainCost(int r, int c) {
+        return cells != null ? cells[r][c].getTerrainCost() : compactCost(r * sizeC + c);
+    } // end of terrainCost()
+
+    /**
+     * Get cell at (r,c). A compact map creates a view of the cell on every call, which
+     * reads and writes the compact storage and is equal to any other coordinate of it.
      * @param r row index
      * @param c col index
      * @return the cell
@@ -124,9 +236,176 @@ public class PathMap {
         if (!isIn(r, c)) {
             return null;
         }
-        return cells[r][c];
+        return cells != null ? cells[r][c] : new CellView(this, r, c);
     } // end of getCell()
 
+    /**
+     * Make (r,c) impassable or passable. Setting it on the coordinate returned by
+     * {@link #getCell(int, int)} does the same.
+     * @param r row index
+     * @param c col index
+     * @param impassable whether the cell is impassable
+     */
+    public void setImpassable(int r, int c, boolean impassable) {
+        checkIn(r, c);
+        getCell(r, c).setImpassable(impassable);
+    } // end of setImpassable()
+
+    /**
+     * Change the terrain cost of (r,c). Setting it on the coordinate returned by
+     * {@link #getCell(int, int)} does the same.
+     * @param r row index
+     * @param c col index
+     * @param cost the terrain cost, 1 or more
+     */
+    public void setTerrainCost(int r, int c, int cost) {
+        checkIn(r, c);
+        if (cost < 1) {
+            throw new IllegalArgumentException("Terrain cost must be 1 or more.");
+        }
+        getCell(r, c).setTerrainCost(cost);
+    } // end of setTerrainCost()
+
+    /**
+     * Get the version of the impassable cells and terrain costs, which changes with every
+     * change of them, so that results computed for an earlier version can be told apart.
+     * @return the version
+     */
+    public long version() {
+        return version.get();
+    } // end of version()
+
+    /**
+     * Register a listener to be told about every later change of a cell. A listener that is
+     * already registered is not added again.
+     * @param listener the listener
+     */
+    public void addChangeListener(MapChangeListener listener) {
+        listeners.addIfAbsent(listener);
+    } // end of addChangeListener()
+
+    /**
+     * Stop telling a listener about changes.
+     * @param listener the listener
+     */
+    public void removeChangeListener(MapChangeListener listener) {
+        listeners.remove(listener);
+    } // end of removeChangeListener()
+
+    /**
+     * Check whether a listener is registered.
+     * @param listener the listener
+     * @return True if it is told about changes. Otherwise false.
+     */
+    public boolean hasChangeListener(MapChangeListener listener) {
+        return listeners.contains(listener);
+    } // end of hasChangeListener()
+
+    /**
+     * Move the version on and tell the listeners, after a change of cell (r,c)
+     */
+    void changed(int r, int c) {
+        widenCostBounds(r, c);
+        long current = version.incrementAndGet();
+        for (MapChangeListener listener : listeners) {
+            listener.cellChanged(r, c, current);
+        }
+    } // end of changed()
+
+    private void checkIn(int r, int c) {
+        if (!isIn(r, c)) {
+            throw new IllegalArgumentException("Coordinate " + r + " " + c + " is not in the map.");
+        }
+    } // end of checkIn()
+
+    /**
+     * Get the terrain cost of a cell of a compact map
+     */
+    int compactCost(int cell) {
+        return byteCosts != null ? byteCosts[cell] & MAX_BYTE_COST : shortCosts[cell] & MAX_SHORT_COST;
+    } // end of compactCost()
+
+    /**
+     * Set the terrain cost of a cell of a compact map, widening the costs to shorts when
+     * the cost does not fit in a byte.
+     */
+    void storeCost(int cell, int cost) {
+        if (cost < 1 || cost > MAX_SHORT_COST) {
+            throw new IllegalArgumentException("Terrain cost must be between 1 and " + MAX_SHORT_COST + ".");
+        }
+        if (byteCosts != null && cost > MAX_BYTE_COST) {
+            shortCosts = new short[byteCosts.length];
+            for (int i = 0; i < byteCosts.length; i++) {
+                shortCosts[i] = (short) (byteCosts[i] & MAX_BYTE_COST);
+            }
+            byteCosts = null;
+        }
+        if (byteCosts != null) {
+            byteCosts[cell] = (byte) cost;
+        } else {
+            shortCosts[cell] = (short) cost;
+        }
+    } // end of storeCost()
+
+    /**
+     * Get the largest terrain cost of the passable cells. It is exact for the loaded map;
+     * after changes it may be larger, as a change only ever widens the bounds.
+     *
+     * @return the largest terrain cost, 1 if there is no passable cell
+     */
+    public synchronized int maxTerrainCost() {
+        findCostBounds();
+        return maxCost;
+    } // end of maxTerrainCost()
+
+    /**
+     * Get the smallest terrain cost of the passable cells. It is exact for the loaded map;
+     * after changes it may be smaller, as a change only ever widens the bounds.
+     *
+     * @return the smallest terrain cost, 1 if there is no passable cell
+     */
+    public synchronized int minTerrainCost() {
+        findCostBounds();
+        return minCost;
+    } // end of minTerrainCost()
+
+    /**
+     * Scan the passable cells for the bounds of their terrain costs, unless they are known
+     */
+    private void findCostBounds() {
+        if (costBoundsKnown) {
+            return;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 1;
+        for (int r = 0; r < sizeR; r++) {
+            for (int c = 0; c < sizeC; c++) {
+                if (isPassable(r, c)) {
+                    min = Math.min(min, terrainCost(r, c));
+                    max = Math.max(max, terrainCost(r, c));
+                }
+            }
+        }
+        minCost = min == Integer.MAX_VALUE ? 1 : min;
+        maxCost = max;
+        costBoundsKnown = true;
+    } // end of findCostBounds()
+
+    /**
+     * Widen the known cost bounds to include changed cell (r,c), if it is passable
+     */
+    private synchronized void widenCostBounds(int r, int c) {
+        if (costBoundsKnown && isPassable(r, c)) {
+            int cost = terrainCost(r, c);
+            minCost = Math.min(minCost, cost);
+            maxCost = Math.max(maxCost, cost);
+        }
+    } // end of widenCostBounds()
+
+    private synchronized void forgetCostBounds() {
+        costBoundsKnown = false;
+    } // end of forgetCostBounds()
+
     /**
      * Draw the map in a window.
      */
@@ -178,12 +457,12 @@ public class PathMap {
                 StdDraw.line(c, r, c, r + 1);
                 StdDraw.line(c, r, c + 1, r);
                 // draw impassable cells
-                if (cells[r][c].getImpassable()) {
+                if (!isPassable(r, c)) {
                     StdDraw.filledSquare(c + 0.5, r + 0.5, 0.5);
                 }
                 // draw terrain costs
-                if (cells[r][c].getTerrainCost() > 1) {
-                    StdDraw.text(c + 0.5, r + 0.5, String.valueOf(cells[r][c].getTerrainCost()));
+                if (terrainCost(r, c) > 1) {
+                    StdDraw.text(c + 0.5, r + 0.5, String.valueOf(terrainCost(r, c)));
                 }
             }
         }
@@ -0,0 +1,64 @@
+package pathFinder;
+
+import map.CellGraph;
+import map.PathMap;
+
+/**
+ * A* search over the cells of a {@link PathMap}. The estimate of a cell is its Manhattan
+ * distance to the nearest destination times the smallest terrain cost of the map. Every move
+ * changes the Manhattan distance by at most 1 and costs at least the smallest terrain cost,
+ * so the estimate is consistent: the first destination settled is still on a shortest path,
+ * with multiple origins and destinations as well. The smallest cost is read from the map at
+ * the start of every search, so it stays right when the map changes between searches.
+ */
+public class AStarPathFinder extends GridDijkstraPathFinder {
+
+    // Smallest terrain cost of the passable cells, when the current search started
+    private int minTerrainCost;
+    // Rows and columns of the targets of the current search
+    private int[] targetRows = new int[0];
+    private int[] targetCols = new int[0];
+
+    /**
+     * Initialize the search with a {@link PathMap} instance. The frontier is an
+     * {@link IndexedCellHeap}, since A* can lower the key of a queued cell.
+     *
+     * @param map a grid representation of the graph
+     */
+    public AStarPathFinder(PathMap map) {
+        super(map, QueueStrategy.INDEXED_HEAP);
+    } // end of AStarPathFinder()
+
+    /**
+     * Initialize the search with a {@link PathMap} instance searched over the given graph
+     *
+     * @param map   a grid representation of the graph
+     * @param graph the graph of the map to search
+     */
+    public AStarPathFinder(PathMap map, CellGraph graph) {
+        super(map, graph, QueueStrategy.INDEXED_HEAP);
+    } // end of AStarPathFinder()
+
+    @Override
+    protected void initEstimate(int[] targets) {
+        minTerrainCost = map.minTerrainCost();
+        targetRows = new int[targets.length];
+        targetCols = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            targetRows[i] = targets[i] / sizeC;
+            targetCols[i] = targets[i] % sizeC;
+        }
+    }
+
+    @Override
+    protected int estimate(int cell) {
+        int r = cell / sizeC;
+        int c = cell % sizeC;
+        int nearest = Integer.MAX_VALUE;
+        for (int i = 0; i < targetRows.length; i++) {
+            nearest = Math.min(nearest, Math.abs(r - targetRows[i]) + Math.abs(c - targetCols[i]));
+        }
+        return nearest == Integer.MAX_VALUE ? 0 : nearest * minTerrainCost;
+    }
+
+} // end of class AStarPathFinder
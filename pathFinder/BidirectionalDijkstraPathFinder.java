@@ -0,0 +1,185 @@
+package pathFinder;
+
+import map.*;
+
+import java.util.LinkedList;
+
+/**
+ * Bidirectional Dijkstra's algorithm over the cells of a {@link PathMap}. One search grows
+ * forward from the origins along the edges of the {@link CellGraph}, the other backward from the
+ * destinations along its reversed edges, so both add up the terrain cost of the cells they
+ * enter on the forward path. The searches take turns by the smaller radius, and every scanned
+ * edge that joins the two frontiers gives a candidate path. They stop once the two radii add
+ * up to the cost of the best candidate, since no shorter path can be left.
+ */
+public class BidirectionalDijkstraPathFinder extends GridDijkstraPathFinder {
+
+    // Distance to the destinations, next cell towards them and settled flag of every cell
+    private SearchContext backwardContext;
+    // Frontier of the backward search
+    private CellQueue backwardQueue;
+    // Cost of the best path found so far, and the edge joining its two halves
+    private int bestCost;
+    private int meetForward;
+    private int meetBackward;
+
+    /**
+     * Initialize the search arrays and both the forward and reversed {@link Graph}
+     *
+     * @param map a grid representation of the graph
+     */
+    public BidirectionalDijkstraPathFinder(PathMap map) {
+        this(map, reversibleGraph(map));
+    } // end of BidirectionalDijkstraPathFinder()
+
+    /**
+     * Initialize the search arrays for a {@link PathMap} instance searched over the given
+     * graph, which must be able to list in-neighbours, e.g. a {@link GridGraph}
+     *
+     * @param map   a grid representation of the graph
+     * @param graph the graph of the map to search
+     */
+    public BidirectionalDijkstraPathFinder(PathMap map, CellGraph graph) {
+        super(map, graph);
+        backwardContext = new SearchContext(cellCount);
+        backwardQueue = queueStrategy.create(cellCount, map.maxTerrainCost());
+    } // end of BidirectionalDijkstraPathFinder()
+
+    /**
+     * Build the {@link Graph} of a map with both its out-edges and its reversed in-edges
+     */
+    private static Graph reversibleGraph(PathMap map) {
+        Graph graph = compressedGraph(map);
+        graph.initReverseGraph();
+        return graph;
+    }
+
+    @Override
+    protected int findSegment(int[] sources, int[] targets, LinkedList<Coordinate> path) {
+        init(sources, context, queue);
+        init(targets, backwardContext, backwardQueue);
+        bestCost = INFINITY;
+        for (int source : sources) {
+            if (backwardContext.distance(source) == 0) {
+                meet(source, 0, source);
+            }
+        }
+        int forwardRadius = 0;
+        int backwardRadius = 0;
+        while ((!queue.isEmpty() || !backwardQueue.isEmpty())
+                && (bestCost == INFINITY || forwardRadius + backwardRadius < bestCost)) {
+            boolean forward = backwardQueue.isEmpty()
+                    || (!queue.isEmpty() && forwardRadius <= backwardRadius);
+            if (forward) {
+                int cell = settle(queue, context);
+                if (cell != NO_CELL) {
+                    forwardRadius = context.distance(cell);
+                    scanForward(cell);
+                }
+            } else {
+                int cell = settle(backwardQueue, backwardContext);
+                if (cell != NO_CELL) {
+                    backwardRadius = backwardContext.distance(cell);
+                    scanBackward(cell);
+                }
+            }
+        }
+        if (bestCost == INFINITY) {
+            return INFINITY;
+        }
+        appendPath(meetForward, path);
+        for (int cell = meetBackward; cell != NO_CELL; cell = backwardContext.parent(cell)) {
+            if (cell != meetForward) {
+                path.add(toCoordinate(cell));
+            }
+        }
+        return bestCost;
+    }
+
+    /**
+     * Reset the state of one direction and queue its start cells at distance 0.
+     */
+    private void init(int[] starts, SearchContext state, CellQueue frontier) {
+        state.reset();
+        frontier.clear();
+        for (int start : starts) {
+            state.reach(start, 0, NO_CELL);
+            frontier.offer(start, 0);
+        }
+    }
+
+    /**
+     * Poll the next cell of one direction and mark it settled.
+     *
+     * @return the settled cell, or {@link #NO_CELL} if the polled entry was stale
+     */
+    private int settle(CellQueue frontier, SearchContext state) {
+        int cell = frontier.poll();
+        if (state.isSettled(cell)) {
+            stalePopCounter++;
+            return NO_CELL;
+        }
+        state.settle(cell);
+        coordinatesExploredCounter++;
+        return cell;
+    }
+
+    /**
+     * Relax the out-edges of a cell settled by the forward search and check every neighbor
+     * already reached by the backward search for a shorter path.
+     */
+    private void scanForward(int cell) {
+        int dist = context.distance(cell);
+        int backwardDist = backwardContext.distance(cell);
+        if (backwardDist < INFINITY) {
+            meet(cell, dist + backwardDist, cell);
+        }
+        int degree = graph.neighbors(cell, neighborCells, neighborWeights);
+        for (int i = 0; i < degree; i++) {
+            int neighbor = neighborCells[i];
+            int newDist = dist + neighborWeights[i];
+            relax(cell, neighbor, newDist);
+            int neighborBackwardDist = backwardContext.distance(neighbor);
+            if (neighborBackwardDist < INFINITY) {
+                meet(cell, newDist + neighborBackwardDist, neighbor);
+            }
+        }
+    }
+
+    /**
+     * Relax the reversed in-edges of a cell settled by the backward search and check every
+     * neighbor already reached by the forward search for a shorter path.
+     */
+    private void scanBackward(int cell) {
+        int dist = backwardContext.distance(cell);
+        int forwardDist = context.distance(cell);
+        if (forwardDist < INFINITY) {
+            meet(cell, forwardDist + dist, cell);
+        }
+        int degree = graph.inNeighbors(cell, neighborCells, neighborWeights);
+        for (int i = 0; i < degree; i++) {
+            int neighbor = neighborCells[i];
+            int newDist = dist + neighborWeights[i];
+            if (newDist < backwardContext.distance(neighbor)) {
+                backwardContext.reach(neighbor, newDist, cell);
+                backwardQueue.offer(neighbor, newDist);
+            }
+            int neighborForwardDist = context.distance(neighbor);
+            if (neighborForwardDist < INFINITY) {
+                meet(neighbor, neighborForwardDist + newDist, cell);
+            }
+        }
+    }
+
+    /**
+     * Keep a path through the forward cell and then the backward cell if it is the shortest yet.
+     */
+    private void meet(int forwardCell, int cost, int backwardCell) {
+        if (cost < bestCost) {
+            bestCost = cost;
+            meetForward = forwardCell;
+            meetBackward = backwardCell;
+        }
+    }
+
+} // end of class BidirectionalDijkstraPathFinder
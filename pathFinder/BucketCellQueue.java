@@ -0,0 +1,163 @@
+package pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue for Dial's algorithm. Cells are kept in a circular array of buckets, one per
+ * key value, as doubly linked lists threaded through arrays indexed by cell id, so offer,
+ * decrease-key and poll are O(1) apart from skipping empty buckets.
+ * <p>
+ * The keys must be monotone: a cell cannot be offered with a key smaller than the last polled
+ * key. Dijkstra's algorithm meets this, and with the maximum edge weight as the key step given
+ * at construction every key fits in the buckets. A key further ahead, e.g. after a terrain cost
+ * of the map was raised, makes the queue grow its buckets and move the queued cells over.
+ */
+public class BucketCellQueue implements CellQueue {
+
+    // Link value for no cell
+    private static final int NONE = -1;
+
+    // Maximum difference between the largest queued key and the last polled key
+    private int maxKeyStep;
+    // First cell of every bucket
+    private int[] heads;
+    // Next and previous cell in the same bucket, for every cell id
+    private final int[] next;
+    private final int[] prev;
+    // Key of every queued cell, NONE for the others
+    private final int[] keys;
+    // Smallest key that can still be queued: the last polled key, or the smallest
+    // offered key before the first poll
+    private int current;
+    // Largest key offered before the first poll
+    private int highest;
+    // Whether a cell has been polled since the last clear
+    private boolean polled;
+    private int size;
+
+    /**
+     * @param cellCount  number of cell ids of the map
+     * @param maxKeyStep largest key increase of one offer over the last polled key,
+     *                   e.g. the maximum terrain cost
+     */
+    public BucketCellQueue(int cellCount, int maxKeyStep) {
+        if (maxKeyStep < 0) {
+            throw new IllegalArgumentException("Maximum key step cannot be negative.");
+        }
+        this.maxKeyStep = maxKeyStep;
+        heads = new int[maxKeyStep + 1];
+        next = new int[cellCount];
+        prev = new int[cellCount];
+        keys = new int[cellCount];
+        Arrays.fill(heads, NONE);
+        Arrays.fill(keys, NONE);
+    }
+
+    @Override
+    public void clear() {
+        for (int b = 0; b < heads.length; b++) {
+            for (int cell = heads[b]; cell != NONE; cell = next[cell]) {
+                keys[cell] = NONE;
+            }
+            heads[b] = NONE;
+        }
+        size = 0;
+        polled = false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void offer(int cell, int key) {
+        if (!polled) {
+            // Before the first poll the range is set by the offered keys
+            if (size == 0) {
+                current = key;
+                highest = key;
+            } else {
+                current = Math.min(current, key);
+                highest = Math.max(highest, key);
+            }
+        } else if (key < current) {
+            throw new IllegalArgumentException(
+                    "Key " + key + " is below the bucket range starting at " + current + ".");
+        }
+        if (Math.max(highest, key) - current > maxKeyStep) {
+            grow(Math.max(highest, key) - current);
+        }
+        if (keys[cell] != NONE) {
+            if (key >= keys[cell]) {
+                return;
+            }
+            unlink(cell);
+        } else {
+            size++;
+        }
+        keys[cell] = key;
+        int bucket = key % heads.length;
+        prev[cell] = NONE;
+        next[cell] = heads[bucket];
+        if (heads[bucket] != NONE) {
+            prev[heads[bucket]] = cell;
+        }
+        heads[bucket] = cell;
+    }
+
+    @Override
+    public int poll() {
+        polled = true;
+        int bucket = current % heads.length;
+        while (heads[bucket] == NONE) {
+            current++;
+            bucket = current % heads.length;
+        }
+        int cell = heads[bucket];
+        unlink(cell);
+        keys[cell] = NONE;
+        size--;
+        return cell;
+    }
+
+    /**
+     * Make room for keys up to keyStep past the current key, at least doubling the buckets,
+     * and move the queued cells to their new buckets.
+     */
+    private void grow(int keyStep) {
+        int[] oldHeads = heads;
+        maxKeyStep = Math.max(keyStep, 2 * maxKeyStep + 1);
+        heads = new int[maxKeyStep + 1];
+        Arrays.fill(heads, NONE);
+        for (int head : oldHeads) {
+            int cell = head;
+            while (cell != NONE) {
+                int following = next[cell];
+                int bucket = keys[cell] % heads.length;
+                prev[cell] = NONE;
+                next[cell] = heads[bucket];
+                if (heads[bucket] != NONE) {
+                    prev[heads[bucket]] = cell;
+                }
+                heads[bucket] = cell;
+                cell = following;
+            }
+        }
+    }
+
+    /**
+     * Remove a queued cell from its bucket.
+     */
+    private void unlink(int cell) {
+        if (prev[cell] == NONE) {
+            heads[keys[cell] % heads.length] = next[cell];
+        } else {
+            next[prev[cell]] = next[cell];
+        }
+        if (next[cell] != NONE) {
+            prev[next[cell]] = prev[cell];
+        }
+    }
+
+} // end of class BucketCellQueue
@@ -0,0 +1,33 @@
+package pathFinder;
+
+/**
+ * Priority queue of cell ids keyed by their distance estimate, used as the frontier
+ * of the grid search engines.
+ */
+public interface CellQueue {
+    /**
+     * Remove all cells from the queue.
+     */
+    public abstract void clear();
+
+    /**
+     * @return true if no cell is queued
+     */
+    public abstract boolean isEmpty();
+
+    /**
+     * Add a cell with the given key. If the cell is already queued with a larger key,
+     * its key is lowered; implementations without decrease-key may queue it again instead.
+     *
+     * @param cell the cell id
+     * @param key  the distance estimate of the cell
+     */
+    public abstract void offer(int cell, int key);
+
+    /**
+     * Remove the cell with the smallest key.
+     *
+     * @return the removed cell id
+     */
+    public abstract int poll();
+} // end of interface CellQueue
@@ -9,8 +9,10 @@ public class DijkstraPathFinder implements PathFinder {
     // Graph representation of the map
     private Graph graph;
     private int coordinatesExploredCounter = 0;
-    // Keep track of distances to the origins for all the nodes
-    private Map<Coordinate, Edge> distances;
+    // Number of columns of the map, used to number the nodes
+    private int sizeC;
+    // Keep track of distances to the origins for the nodes reached, reused across searches
+    private SearchContext distances;
     // Store the distances of the neighboring nodes
     private PriorityQueue<Edge> minDistQueue;
     // Store the visited nodes
@@ -29,6 +31,10 @@ public class DijkstraPathFinder implements PathFinder {
     private int minCost;
     // The current best path that goes through all waypoints
     private LinkedList<Coordinate> currentBestPath;
+    // Chooses the waypoint visiting order, picked by the number of waypoints when null
+    private TourSolver tourSolver;
+    // Waypoint tour of the last path, null if it had no waypoints or no tour
+    private WaypointTour lastTour;
 
     /**
      * Initialize the custom {@link Graph} with a {@link PathMap} instance
@@ -36,21 +42,40 @@ public class DijkstraPathFinder implements PathFinder {
      * @param map a grid representation of the graph
      */
     public DijkstraPathFinder(PathMap map) {
+        this(map, new Graph(map));
+        graph.initGraph();
+    } // end of DijkstraPathFinder()
+
+    /**
+     * Initialize the search with a {@link PathMap} instance and a {@link Graph} of it that was
+     * already built, e.g. to give several finders one graph. The graph is only read, so finders
+     * on different threads can share it; each finder keeps its search state to itself.
+     *
+     * @param map   a grid representation of the graph
+     * @param graph the graph of the map, with its out-edges built
+     */
+    public DijkstraPathFinder(PathMap map, Graph graph) {
         origins = map.originCells;
         destinations = map.destCells;
         waypoints = map.waypointCells;
-        graph = new Graph(map);
-        graph.initGraph();
+        sizeC = map.sizeC;
+        this.graph = graph;
+        distances = new SearchContext(map.sizeR * map.sizeC);
     } // end of DijkstraPathFinder()
 
     /**
-     * Find shortest path that meets the parameter requirements
+     * Find shortest path that meets the parameter requirements. The finder can be called again,
+     * e.g. after the map changed; every call starts from an empty path.
      *
      * @return the list of coordinates that form the shortest path
      */
     @Override
     public List<Coordinate> findPath() {
+        // forget the path of the previous call, which the segments would be appended to
+        shortestPath = null;
         totalCostOfCurrentPath = 0;
+        minCost = Integer.MAX_VALUE;
+        lastTour = null;
         if (waypoints.isEmpty()) { // Run Dijkstra directly when there is no waypoints involved
             findPath(origins, destinations);
             System.out.println("Total cost: " + totalCostOfCurrentPath);
@@ -65,74 +90,83 @@ public class DijkstraPathFinder implements PathFinder {
     } // end of findPath()
 
     /**
-     * Main method for finding shortest path with waypoints
-     * using brute force method by comparing all permutations of
-     * waypoint visiting order
+     * Use after findPath() with waypoints, to see how the visiting order was picked, e.g. the
+     * lower bound of a heuristic order.
+     *
+     * @return the waypoint tour of the last path, null if it had no waypoints or no path
      */
-    private void findPathWithWaypoints() {
-        minCost = Integer.MAX_VALUE; // Set initial minCost to "infinity"
-        currentBestPath = new LinkedList<>();
-        findPathForEachPermutation(waypoints.size()); // Run helper method to get all permutations
+    public WaypointTour lastTour() {
+        return lastTour;
     }
 
     /**
-     * Use the Heap's algorithm to recursively generate all permutations
-     * of the list of waypoints to get the visiting order of those waypoints.
-     * Instead of saving all the permutations, this method calls {@link DijkstraPathFinder#calculatePath(List)}
-     * to find a path that goes through those waypoints in the generated order. This way it
-     * significantly reduces the space complexity.
+     * Set the solver that picks the waypoint visiting order. By default it is picked by
+     * {@link TourSolver#forWaypoints(int)}: exact for up to 20 waypoints, heuristic beyond
      *
-     * @param n the size of the list to generate permutations for. In this case, it's the number of
-     *          waypoints
+     * @param tourSolver the solver
      */
-    private void findPathForEachPermutation(int n) {
-        if (n == 1) {
-            calculatePath(new ArrayList<>(waypoints));
-        } else {
-            for (int i = 0; i < n; i++) {
-                findPathForEachPermutation(n - 1);
-                if (n % 2 == 1) {
-                    Collections.swap(waypoints, 0, n - 1);
-                } else {
-                    Collections.swap(waypoints, i, n - 1);
-                }
-            }
+    public void setTourSolver(TourSolver tourSolver) {
+        this.tourSolver = tourSolver;
+    }
+
+    /**
+     * Main method for finding shortest path with waypoints.
+     * It first builds a {@link WaypointTable} with one search from every origin and every
+     * waypoint, then lets the {@link TourSolver} pick the waypoint visiting order on that table.
+     * Only the segments of the chosen order are searched again to get the coordinates of the path.
+     */
+    private void findPathWithWaypoints() {
+        minCost = Integer.MAX_VALUE; // Set initial minCost to "infinity"
+        currentBestPath = new LinkedList<>();
+        WaypointTable table = new WaypointTable(origins, waypoints, destinations, this::findCosts);
+        TourSolver solver = tourSolver != null ? tourSolver : TourSolver.forWaypoints(waypoints.size());
+        WaypointTour tour = solver.solve(table);
+        if (tour == null) {
+            return;
         }
+        lastTour = tour;
+        List<Coordinate> lastDest = origins.subList(tour.getOrigin(), tour.getOrigin() + 1);
+        for (int waypoint : tour.getOrder()) {
+            lastDest = findPath(lastDest, waypoints.subList(waypoint, waypoint + 1));
+        }
+        findPath(lastDest, destinations.subList(tour.getDestination(), tour.getDestination() + 1));
+        minCost = totalCostOfCurrentPath;
+        currentBestPath = shortestPath;
+        // Reset for the next run
+        totalCostOfCurrentPath = 0;
+        shortestPath = null;
     }
 
     /**
-     * For each waypoints order permutation, it finds N possible paths
-     * where N is the number of origin nodes. After each iteration, it compares
-     * the current total cost ({@link DijkstraPathFinder#totalCostOfCurrentPath}) to the
-     * previously saved minimum cost ({@link DijkstraPathFinder#minCost}).
-     * If current cost is lower then update the {@link DijkstraPathFinder#minCost}, otherwise
-     * discard the current path as it will not be the shortest.
-     * If a path cannot be found, discard the path as well.
+     * Run Dijkstra's algorithm from one node until all targets are settled, to fill a
+     * {@link WaypointTable}.
      *
-     * @param waypointsOrder
+     * @param source  the start node
+     * @param targets the nodes to find the costs to
+     * @return the cost to every target, Integer.MAX_VALUE for the unreachable ones
      */
-    private void calculatePath(List<Coordinate> waypointsOrder) {
-        // For every origin in the list of origins
-        for (int i = 0; i < origins.size(); i++) {
-            List<Coordinate> waypointsOrderCopy = new ArrayList<>(waypointsOrder);
-            List<Coordinate> origin = origins.subList(i, i + 1); // Get one origin
-            List<Coordinate> lastDest = origin;
-            // Find shortest path between segment of the overall path
-            while (!waypointsOrderCopy.isEmpty()) {
-                List<Coordinate> dest = new ArrayList<>();
-                dest.add(waypointsOrderCopy.remove(0));
-                lastDest = findPath(lastDest, dest);
-            }
-            if (!findPath(lastDest, destinations).isEmpty()) {
-                if (totalCostOfCurrentPath < minCost) {
-                    minCost = totalCostOfCurrentPath;
-                    currentBestPath = shortestPath;
-                }
+    private int[] findCosts(Coordinate source, List<Coordinate> targets) {
+        List<Coordinate> sources = Collections.singletonList(source);
+        initDistances(sources);
+        initQueue(sources);
+        initSettledNodes();
+        Set<Coordinate> remaining = new HashSet<>(targets);
+        while (!minDistQueue.isEmpty() && !remaining.isEmpty()) {
+            Edge minDist = minDistQueue.remove();
+            Coordinate node = minDist.getTo();
+            if (!settledNodes.containsKey(node)) {
+                settledNodes.put(node, minDist);
+                coordinatesExploredCounter++;
+                remaining.remove(node);
+                updateNeighbors(node);
             }
-            // Reset for the next run
-            totalCostOfCurrentPath = 0;
-            shortestPath = null;
         }
+        int[] costs = new int[targets.size()];
+        for (int i = 0; i < costs.length; i++) {
+            Edge dist = settledNodes.get(targets.get(i));
+            costs[i] = dist == null ? Integer.MAX_VALUE : dist.getWeight();
+        }
+        return costs;
     }
 
     /**
@@ -190,12 +224,11 @@ public class DijkstraPathFinder implements PathFinder {
         }
         for (Edge neighborEdge : neighborEdges) {
             Coordinate neighborNode = neighborEdge.getTo();
-            int currentDistValue = distances.get(neighborNode).getWeight();
-            int newDistValue = distances.get(node).getWeight() + neighborEdge.getWeight();
+            int currentDistValue = distances.distance(cellOf(neighborNode));
+            int newDistValue = distances.distance(cellOf(node)) + neighborEdge.getWeight();
             if (newDistValue < currentDistValue) {
-                Edge newDist = new Edge(node, neighborNode, newDistValue);
-                distances.put(neighborNode, newDist);
-                minDistQueue.offer(newDist);
+                distances.reach(cellOf(neighborNode), newDistValue, cellOf(node));
+                minDistQueue.offer(new Edge(node, neighborNode, newDistValue));
             }
         }
     }
@@ -262,21 +295,23 @@ public class DijkstraPathFinder implements PathFinder {
 
     /**
      * Initialize distances from origin to each node.
-     * All origins have a distance of 0 and the rest "infinity"
+     * All origins have a distance of 0 and the rest "infinity", which the {@link SearchContext}
+     * gives every node not reached since its reset, so only the origins are written.
      *
      * @param origins
      */
     private void initDistances(List<Coordinate> origins) {
-        distances = new HashMap<>();
+        distances.reset();
         for (Coordinate origin : origins) {
-            distances.put(origin, new Edge(origin, origin, 0));
+            distances.reach(cellOf(origin), 0, SearchContext.NO_CELL);
         }
+    }
 
-        for (Coordinate node : graph.getNodes()) {
-            if (!origins.contains(node)) {
-                distances.put(node, new Edge(null, node, Integer.MAX_VALUE));
-            }
-        }
+    /**
+     * Get the id of a node, as numbered by the {@link SearchContext}
+     */
+    private int cellOf(Coordinate node) {
+        return node.getRow() * sizeC + node.getColumn();
     }
 
     /**
@@ -288,7 +323,7 @@ public class DijkstraPathFinder implements PathFinder {
     private void initQueue(List<Coordinate> origins) {
         minDistQueue = new PriorityQueue<>();
         for (Coordinate origin : origins) {
-            minDistQueue.add(distances.get(origin));
+            minDistQueue.add(new Edge(origin, origin, 0));
         }
     }
 
@@ -0,0 +1,241 @@
+package pathFinder;
+
+import map.CellGraph;
+import map.Coordinate;
+import map.GridGraph;
+import map.MapChangeListener;
+import map.PathMap;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Distance to the nearest destination and direction of the next step for every cell of a map,
+ * from one reverse Dijkstra search started at all destinations at once. Any number of agents
+ * can then read their shortest path from the field in time linear in its length, instead of
+ * each running a search of their own.
+ * <p>
+ * A distance takes an int per cell and a direction two bits, four cells to a byte. The field is
+ * kept until the {@link PathMap#version()} changes and is computed again by the first read
+ * after that. Reads are safe from several threads: every computation publishes a new field.
+ */
+public class FlowField implements AutoCloseable {
+
+    private static final int INFINITY = SearchContext.INFINITY;
+
+    // Directions of the next step, in the neighbour order of the graphs: down, up, left, right
+    private static final int[] ROW_STEP = {1, -1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+    // Number of directions packed in a long
+    private static final int DIRECTIONS_PER_LONG = 32;
+
+    /**
+     * The distances and directions computed for one version of the map.
+     */
+    private static final class Field {
+        private final long version;
+        private final int[] distances;
+        private final long[] directions;
+        private final int settled;
+
+        Field(long version, int[] distances, long[] directions, int settled) {
+            this.version = version;
+            this.distances = distances;
+            this.directions = directions;
+            this.settled = settled;
+        }
+
+        int direction(int cell) {
+            return (int) (directions[cell / DIRECTIONS_PER_LONG] >>> (cell % DIRECTIONS_PER_LONG * 2)) & 3;
+        }
+    } // end of class Field
+
+    private final PathMap map;
+    private final CellGraph graph;
+    private final int sizeC;
+    private final int cellCount;
+    // Cell ids of the destinations
+    private final int[] destinations;
+    // The field of the latest computation, null before the first
+    private volatile Field field;
+    // The graph this field registered with the map, null if it was given one
+    private MapChangeListener followingGraph;
+
+    /**
+     * Route to the destinations of a map over a {@link GridGraph} of it, registered with the
+     * map to follow its changes until {@link #close()}.
+     *
+     * @param map the map
+     */
+    public FlowField(PathMap map) {
+        this(map, new GridGraph(map), map.destCells);
+        followingGraph = (GridGraph) graph;
+        map.addChangeListener(followingGraph);
+    } // end of FlowField()
+
+    /**
+     * @param map          the map
+     * @param graph        a graph of the map with in-neighbours, following its changes
+     * @param destinations the cells every path leads to
+     * @throws IllegalArgumentException if a destination is not in the map
+     */
+    public FlowField(PathMap map, CellGraph graph, List<Coordinate> destinations) {
+        this.map = map;
+        this.graph = graph;
+        sizeC = map.sizeC;
+        cellCount = map.sizeR * map.sizeC;
+        this.destinations = new int[destinations.size()];
+        for (int i = 0; i < this.destinations.length; i++) {
+            this.destinations[i] = toCell(destinations.get(i));
+        }
+    } // end of FlowField()
+
+    /**
+     * Unregister the graph created by {@link #FlowField(PathMap)} from the map, so the map can
+     * outlive the field. The field must not be read afterwards.
+     */
+    @Override
+    public void close() {
+        if (followingGraph != null) {
+            map.removeChangeListener(followingGraph);
+            followingGraph = null;
+        }
+    } // end of close()
+
+    /**
+     * Compute the field if it is missing or the map changed since it was computed.
+     *
+     * @return the field for the current version of the map
+     */
+    private Field current() {
+        Field current = field;
+        if (current != null && current.version == map.version()) {
+            return current;
+        }
+        synchronized (this) {
+            if (field == null || field.version != map.version()) {
+                field = compute();
+            }
+            return field;
+        }
+    } // end of current()
+
+    /**
+     * Search backwards from all destinations: settling a cell at distance d reaches every
+     * in-neighbour at d plus the terrain cost of the cell, and points it at the cell.
+     */
+    private Field compute() {
+        long version = map.version();
+        int[] distances = new int[cellCount];
+        long[] directions = new long[(cellCount + DIRECTIONS_PER_LONG - 1) / DIRECTIONS_PER_LONG];
+        Arrays.fill(distances, INFINITY);
+        BitSet settledCells = new BitSet(cellCount);
+        int maxCost = map.maxTerrainCost();
+        CellQueue queue = QueueStrategy.select(maxCost, QueueStrategy.DEFAULT_BUCKET_BOUND).create(cellCount, maxCost);
+        for (int destination : destinations) {
+            distances[destination] = 0;
+            queue.offer(destination, 0);
+        }
+        int[] cells = new int[CellGraph.MAX_DEGREE];
+        int[] weights = new int[CellGraph.MAX_DEGREE];
+        int settled = 0;
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            if (settledCells.get(cell)) {
+                continue;
+            }
+            settledCells.set(cell);
+            settled++;
+            int n = graph.inNeighbors(cell, cells, weights);
+            for (int i = 0; i < n; i++) {
+                int from = cells[i];
+                int distance = distances[cell] + weights[i];
+                if (!settledCells.get(from) && distance < distances[from]) {
+                    distances[from] = distance;
+                    setDirection(directions, from, directionTo(from, cell));
+                    queue.offer(from, distance);
+                }
+            }
+        }
+        return new Field(version, distances, directions, settled);
+    } // end of compute()
+
+    /**
+     * Direction of a step from a cell to one of its neighbours.
+     */
+    private int directionTo(int from, int to) {
+        if (to == from + sizeC) {
+            return 0;
+        }
+        if (to == from - sizeC) {
+            return 1;
+        }
+        return to == from - 1 ? 2 : 3;
+    }
+
+    private static void setDirection(long[] directions, int cell, int direction) {
+        int shift = cell % DIRECTIONS_PER_LONG * 2;
+        int word = cell / DIRECTIONS_PER_LONG;
+        directions[word] = directions[word] & ~(3L << shift) | (long) direction << shift;
+    }
+
+    /**
+     * @param r row index
+     * @param c col index
+     * @return the distance from (r,c) to the nearest destination, Integer.MAX_VALUE if none
+     * can be reached
+     */
+    public int distance(int r, int c) {
+        if (!map.isIn(r, c)) {
+            throw new IllegalArgumentException("Coordinate " + r + " " + c + " is not in the map.");
+        }
+        return current().distances[r * sizeC + c];
+    }
+
+    /**
+     * Follow the field from the origin nearest to a destination.
+     *
+     * @param origins the cells the path may start from
+     * @return the path and its cost, with no path if no destination can be reached
+     * @throws IllegalArgumentException if an origin is not in the map
+     */
+    public PathResult pathFrom(List<Coordinate> origins) {
+        Field current = current();
+        int start = SearchContext.NO_CELL;
+        for (Coordinate origin : origins) {
+            int cell = toCell(origin);
+            if (start == SearchContext.NO_CELL || current.distances[cell] < current.distances[start]) {
+                start = cell;
+            }
+        }
+        LinkedList<Coordinate> path = new LinkedList<>();
+        if (start == SearchContext.NO_CELL || current.distances[start] == INFINITY) {
+            return new PathResult(path, PathResult.NO_PATH, 0);
+        }
+        int cell = start;
+        path.add(map.getCell(cell / sizeC, cell % sizeC));
+        while (current.distances[cell] != 0) {
+            int direction = current.direction(cell);
+            cell += ROW_STEP[direction] * sizeC + COL_STEP[direction];
+            path.add(map.getCell(cell / sizeC, cell % sizeC));
+        }
+        return new PathResult(path, current.distances[start], 0);
+    } // end of pathFrom()
+
+    /**
+     * @return the number of cells settled by the latest computation of the field
+     */
+    public int cellsSettled() {
+        return current().settled;
+    }
+
+    private int toCell(Coordinate coord) {
+        if (!map.isIn(coord)) {
+            throw new IllegalArgumentException("Coordinate " + coord.getRow() + " " + coord.getColumn() + " is not in the map.");
+        }
+        return coord.getRow() * sizeC + coord.getColumn();
+    }
+
+} // end of class FlowField
@@ -0,0 +1,553 @@
+package pathFinder;
+
+import map.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Dijkstra's algorithm over the cells of a {@link PathMap}, numbered as {@code r * sizeC + c}.
+ * Distances, parents and settled flags live in a {@link SearchContext} indexed by cell id, so a
+ * search allocates no objects per explored node, and starts without clearing the state of the
+ * previous search, so it costs only the cells it explores. It finds paths of the same cost as
+ * {@link DijkstraPathFinder}.
+ */
+public class GridDijkstraPathFinder implements PathFinder {
+
+    // Value used as "infinity" for unreached cells
+    protected static final int INFINITY = SearchContext.INFINITY;
+    // Parent of a cell that has none (origins and unreached cells)
+    protected static final int NO_CELL = SearchContext.NO_CELL;
+
+    // Grid representation of the map
+    protected PathMap map;
+    // Graph representation of the map
+    protected CellGraph graph;
+    // Number of columns of the map, used to number the cells
+    protected int sizeC;
+    // Number of cells of the map
+    protected int cellCount;
+    protected int coordinatesExploredCounter = 0;
+    // Distance to the origins, previous cell on the shortest path and settled flag of every cell
+    protected SearchContext context;
+    // Destinations of the current search
+    protected BitSet targetCells;
+    // The same destinations, to clear them from targetCells before the next search
+    private int[] currentTargets = new int[0];
+    // Frontier of the search, keyed by distance estimate
+    protected CellQueue queue;
+    // The frontier implementation, to create further queues with
+    protected QueueStrategy queueStrategy;
+    // Number of polled cells that had already been settled
+    protected int stalePopCounter = 0;
+    // Neighbours of the cell being expanded and the weights of the edges to them
+    protected int[] neighborCells = new int[CellGraph.MAX_DEGREE];
+    protected int[] neighborWeights = new int[CellGraph.MAX_DEGREE];
+    // Cells of the last traced segment, from its last cell back to its origin
+    protected int[] segmentCells = new int[64];
+    // List of origin coordinates
+    private List<Coordinate> origins;
+    // list of destination coordinates
+    private List<Coordinate> destinations;
+    // list of waypoint coordinates
+    private List<Coordinate> waypoints;
+    // Chooses the waypoint visiting order, picked by the number of waypoints when null
+    private TourSolver tourSolver;
+    // Waypoint tour of the last query, null if it had no waypoints or no tour
+    private WaypointTour lastTour;
+
+    /**
+     * Initialize the search arrays and the {@link Graph} with a {@link PathMap} instance,
+     * using Dial's buckets as the frontier when the terrain costs are below
+     * {@link QueueStrategy#DEFAULT_BUCKET_BOUND}
+     *
+     * @param map a grid representation of the graph
+     */
+    public GridDijkstraPathFinder(PathMap map) {
+        this(map, QueueStrategy.DEFAULT_BUCKET_BOUND);
+    } // end of GridDijkstraPathFinder()
+
+    /**
+     * Initialize the search arrays and the {@link Graph} with a {@link PathMap} instance,
+     * using Dial's buckets as the frontier when the terrain costs are below the given bound
+     * and a {@link LazyCellHeap} otherwise. Every edge weight is the terrain cost of the cell
+     * it enters, so the first relaxation of a cell by Dijkstra's algorithm is already final
+     * and the lazy heap never holds stale entries.
+     *
+     * @param map         a grid representation of the graph
+     * @param bucketBound largest terrain cost (exclusive) searched with buckets
+     */
+    public GridDijkstraPathFinder(PathMap map, int bucketBound) {
+        this(map, QueueStrategy.select(map.maxTerrainCost(), bucketBound));
+    } // end of GridDijkstraPathFinder()
+
+    /**
+     * Initialize the search arrays and the {@link Graph} with a {@link PathMap} instance
+     *
+     * @param map      a grid representation of the graph
+     * @param strategy the frontier implementation to search with
+     */
+    public GridDijkstraPathFinder(PathMap map, QueueStrategy strategy) {
+        this(map, compressedGraph(map), strategy);
+    } // end of GridDijkstraPathFinder()
+
+    /**
+     * Initialize the search arrays for a {@link PathMap} instance searched over the given
+     * graph, e.g. a {@link GridGraph} that reads neighbours straight from the grid instead of
+     * a {@link Graph} that stores every edge. The frontier is picked as by
+     * {@link #GridDijkstraPathFinder(PathMap)}.
+     *
+     * @param map   a grid representation of the graph
+     * @param graph the graph of the map to search
+     */
+    public GridDijkstraPathFinder(PathMap map, CellGraph graph) {
+        this(map, graph, QueueStrategy.select(map.maxTerrainCost(), QueueStrategy.DEFAULT_BUCKET_BOUND));
+    } // end of GridDijkstraPathFinder()
+
+    /**
+     * Initialize the search arrays for a {@link PathMap} instance searched over the given graph
+     *
+     * @param map      a grid representation of the graph
+     * @param graph    the graph of the map to search
+     * @param strategy the frontier implementation to search with
+     */
+    public GridDijkstraPathFinder(PathMap map, CellGraph graph, QueueStrategy strategy) {
+        this.map = map;
+        origins = map.originCells;
+        destinations = map.destCells;
+        waypoints = map.waypointCells;
+        sizeC = map.sizeC;
+        cellCount = map.sizeR * map.sizeC;
+        this.graph = graph;
+        context = new SearchContext(cellCount);
+        targetCells = new BitSet(cellCount);
+        queueStrategy = strategy;
+        queue = strategy.create(cellCount, map.maxTerrainCost());
+    } // end of GridDijkstraPathFinder()
+
+    /**
+     * Build the {@link Graph} of a map, with every edge stored
+     *
+     * @param map a grid representation of the graph
+     * @return the graph, with its out-edges built
+     */
+    protected static Graph compressedGraph(PathMap map) {
+        Graph graph = new Graph(map);
+        graph.initGraph();
+        return graph;
+    }
+
+    /**
+     * Find shortest path that meets the parameter requirements
+     *
+     * @return the list of coordinates that form the shortest path, empty when there is none
+     */
+    @Override
+    public List<Coordinate> findPath() {
+        PathResult result = findPath(new PathQuery(origins, destinations, waypoints));
+        if (result.isFound()) {
+            System.out.println("Total cost: " + result.getCost());
+        }
+        return new LinkedList<>(result.getPath());
+    } // end of findPath()
+
+    /**
+     * Find the shortest path of a query against the map of this finder. A finder answers
+     * one query at a time; a {@link PathQueryEngine} answers queries from many threads.
+     *
+     * @param query the origins, destinations and waypoints of the path
+     * @return the path and its cost, with no path if there is none
+     * @throws IllegalArgumentException if a coordinate of the query is not in the map
+     */
+    public PathResult findPath(PathQuery query) {
+        checkInMap(query.getOrigins());
+        checkInMap(query.getDestinations());
+        checkInMap(query.getWaypoints());
+        int explored = coordinatesExploredCounter;
+        lastTour = null;
+        LinkedList<Coordinate> path = new LinkedList<>();
+        int cost;
+        if (query.getWaypoints().isEmpty()) {
+            cost = findSegment(toCells(query.getOrigins()), toCells(query.getDestinations()), path);
+        } else {
+            cost = findPathWithWaypoints(query, path);
+        }
+        if (cost == INFINITY) {
+            path.clear();
+        }
+        int lowerBound = lastTour != null && cost != INFINITY ? lastTour.getLowerBound() : cost;
+        return new PathResult(path, cost, coordinatesExploredCounter - explored, lowerBound);
+    } // end of findPath()
+
+    /**
+     * Find the shortest path of a query and write it cell by cell as it is traced back
+     * through the parent array, segment by segment, instead of building it as a list. Only
+     * the cell ids of one segment are kept, to write them origin first.
+     * <p>
+     * The segments are searched by {@link #search(int[], int[])}, also in subclasses that
+     * override {@link #findSegment(int[], int[], LinkedList)}.
+     *
+     * @param query  the origins, destinations and waypoints of the path
+     * @param writer the sink of the path, which is written with no cells if there is none
+     * @return the cost of the path, or {@link #INFINITY} if there is none
+     * @throws IOException              if the writer cannot write
+     * @throws IllegalArgumentException if a coordinate of the query is not in the map
+     */
+    public int writePath(PathQuery query, PathWriter writer) throws IOException {
+        checkInMap(query.getOrigins());
+        checkInMap(query.getDestinations());
+        checkInMap(query.getWaypoints());
+        lastTour = null;
+        int[] stops;
+        if (query.getWaypoints().isEmpty()) {
+            stops = null;
+        } else if ((stops = tourStops(query)) == null) {
+            writer.begin();
+            writer.end();
+            return INFINITY;
+        }
+        int segmentNum = stops == null ? 1 : stops.length - 1;
+        int total = 0;
+        writer.begin();
+        for (int s = 0; s < segmentNum; s++) {
+            int dest = stops == null ? search(toCells(query.getOrigins()), toCells(query.getDestinations()))
+                    : search(new int[]{stops[s]}, new int[]{stops[s + 1]});
+            if (dest == NO_CELL) {
+                // only a query without waypoints gets here, before any cell was written
+                writer.end();
+                return INFINITY;
+            }
+            total += context.distance(dest);
+            int n = traceSegment(dest);
+            for (int i = s == 0 ? n - 1 : n - 2; i >= 0; i--) {
+                writer.add(segmentCells[i] / sizeC, segmentCells[i] % sizeC);
+            }
+        }
+        writer.end();
+        return total;
+    } // end of writePath()
+
+    /**
+     * Use after a query with waypoints, to see how the visiting order was picked, e.g. the
+     * lower bound of a heuristic order.
+     *
+     * @return the waypoint tour of the last query, null if it had no waypoints or no path
+     */
+    public WaypointTour lastTour() {
+        return lastTour;
+    }
+
+    /**
+     * Set the solver that picks the waypoint visiting order. By default it is picked by
+     * {@link TourSolver#forWaypoints(int)}: exact for up to 20 waypoints, heuristic beyond
+     *
+     * @param tourSolver the solver
+     */
+    public void setTourSolver(TourSolver tourSolver) {
+        this.tourSolver = tourSolver;
+    }
+
+    /**
+     * Find the shortest path through all waypoints. Only the segments of the visiting order
+     * picked by {@link #tourStops(PathQuery)} are searched again.
+     *
+     * @param query the origins, destinations and waypoints of the path
+     * @param path  the path to append to
+     * @return the cost of the path, or {@link #INFINITY} if there is none
+     */
+    private int findPathWithWaypoints(PathQuery query, LinkedList<Coordinate> path) {
+        int[] stops = tourStops(query);
+        if (stops == null) {
+            return INFINITY;
+        }
+        int total = 0;
+        for (int i = 1; i < stops.length; i++) {
+            total += findSegment(new int[]{stops[i - 1]}, new int[]{stops[i]}, path);
+        }
+        return total;
+    }
+
+    /**
+     * Pick the visiting order of the waypoints of a query. A {@link WaypointTable} is built
+     * with one search from every origin and every waypoint, and the {@link TourSolver} picks
+     * the order on it.
+     *
+     * @param query the origins, destinations and waypoints of the path
+     * @return the cells of the chosen origin, the waypoints in order and the chosen
+     * destination, or null if there is no path
+     */
+    private int[] tourStops(PathQuery query) {
+        List<Coordinate> waypoints = query.getWaypoints();
+        WaypointTable table = new WaypointTable(query.getOrigins(), waypoints, query.getDestinations(), this::costsFrom);
+        TourSolver solver = tourSolver != null ? tourSolver : TourSolver.forWaypoints(waypoints.size());
+        WaypointTour tour = solver.solve(table);
+        if (tour == null) {
+            return null;
+        }
+        lastTour = tour;
+        int[] stops = new int[waypoints.size() + 2];
+        stops[0] = cellOf(query.getOrigins().get(tour.getOrigin()));
+        int i = 1;
+        for (int waypoint : tour.getOrder()) {
+            stops[i++] = cellOf(waypoints.get(waypoint));
+        }
+        stops[i] = cellOf(query.getDestinations().get(tour.getDestination()));
+        return stops;
+    }
+
+    /**
+     * Find the costs from one cell to several others with a single search, to fill a
+     * {@link WaypointTable}.
+     *
+     * @param source  the start of the search
+     * @param targets the coordinates to find the costs to
+     * @return the cost to every target, {@link #INFINITY} for the unreachable ones
+     */
+    protected int[] costsFrom(Coordinate source, List<Coordinate> targets) {
+        int[] cells = toCells(targets);
+        search(new int[]{cellOf(source)}, cells, true);
+        int[] costs = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            costs[i] = context.isSettled(cells[i]) ? context.distance(cells[i]) : INFINITY;
+        }
+        return costs;
+    }
+
+    /**
+     * Find the shortest path from any of the sources to any of the targets and append it
+     * to the given path. If the path is not empty, its last cell must be the source and
+     * is not repeated.
+     *
+     * @param sources origin cells of the segment
+     * @param targets destination cells of the segment
+     * @param path    the path to append the segment to
+     * @return the cost of the segment, or {@link #INFINITY} if no target can be reached
+     */
+    protected int findSegment(int[] sources, int[] targets, LinkedList<Coordinate> path) {
+        int dest = search(sources, targets);
+        if (dest == NO_CELL) {
+            return INFINITY;
+        }
+        appendPath(dest, path);
+        return context.distance(dest);
+    }
+
+    /**
+     * Run Dijkstra's algorithm from all sources until the first target is settled.
+     *
+     * @param sources origin cells, all at distance 0
+     * @param targets destination cells
+     * @return the target that was reached, or {@link #NO_CELL} if none can be reached
+     */
+    protected int search(int[] sources, int[] targets) {
+        return search(sources, targets, false);
+    }
+
+    /**
+     * Run Dijkstra's algorithm from all sources until the first target, or every target,
+     * is settled.
+     *
+     * @param sources origin cells, all at distance 0
+     * @param targets destination cells
+     * @param all     whether to go on until every reachable target is settled
+     * @return the last target that was reached, or {@link #NO_CELL} if none can be reached
+     */
+    protected int search(int[] sources, int[] targets, boolean all) {
+        context.reset();
+        for (int target : currentTargets) {
+            targetCells.clear(target);
+        }
+        currentTargets = targets;
+        // count the distinct targets while marking them, instead of a pass over the whole bitset
+        int distinct = 0;
+        for (int target : targets) {
+            if (!targetCells.get(target)) {
+                targetCells.set(target);
+                distinct++;
+            }
+        }
+        int remaining = all ? distinct : 1;
+        int reached = NO_CELL;
+        // a search for every target goes out to the farthest one, where an estimate towards
+        // the nearest prunes little and costs a pass over the targets at every cell
+        initEstimate(all && targets.length > 1 ? new int[0] : targets);
+        queue.clear();
+        for (int source : sources) {
+            context.reach(source, 0, NO_CELL);
+            queue.offer(source, estimate(source));
+        }
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            if (context.isSettled(cell)) {
+                stalePopCounter++;
+                continue;
+            }
+            context.settle(cell);
+            coordinatesExploredCounter++;
+            if (targetCells.get(cell)) {
+                reached = cell;
+                if (--remaining == 0) {
+                    return reached;
+                }
+            }
+            updateNeighbors(cell);
+        }
+        return reached;
+    }
+
+    /**
+     * Prepare {@link #estimate(int)} for the targets of a new search.
+     *
+     * @param targets destination cells of the search
+     */
+    protected void initEstimate(int[] targets) {
+    }
+
+    /**
+     * Lower bound of the distance from a cell to the nearest target, added to the distance
+     * of the cell to order the frontier. Dijkstra's algorithm uses no estimate.
+     *
+     * @param cell a cell id
+     * @return the estimate, 0 for Dijkstra's algorithm
+     */
+    protected int estimate(int cell) {
+        return 0;
+    }
+
+    /**
+     * Relax the out-edges of a freshly settled cell.
+     *
+     * @param cell the settled cell
+     */
+    protected void updateNeighbors(int cell) {
+        int dist = context.distance(cell);
+        int degree = graph.neighbors(cell, neighborCells, neighborWeights);
+        for (int i = 0; i < degree; i++) {
+            relax(cell, neighborCells[i], dist + neighborWeights[i]);
+        }
+    }
+
+    /**
+     * Lower the distance of a cell if the new distance through a settled cell is shorter,
+     * and queue it with its new key.
+     *
+     * @param from    the settled cell
+     * @param to      the cell to relax
+     * @param newDist the distance of the cell through the settled cell
+     * @return true if the distance was lowered
+     */
+    protected boolean relax(int from, int to, int newDist) {
+        if (newDist >= context.distance(to)) {
+            return false;
+        }
+        context.reach(to, newDist, from);
+        queue.offer(to, newDist + estimate(to));
+        return true;
+    }
+
+    /**
+     * Backtrace from a settled cell to its origin through the parent array and append
+     * the cells to the path, skipping the origin if it already ends the path.
+     *
+     * @param dest the last cell of the segment
+     * @param path the path to append to
+     */
+    protected void appendPath(int dest, LinkedList<Coordinate> path) {
+        int n = traceSegment(dest);
+        for (int i = path.isEmpty() ? n - 1 : n - 2; i >= 0; i--) {
+            path.add(toCoordinate(segmentCells[i]));
+        }
+    }
+
+    /**
+     * Backtrace from a settled cell to its origin through the parent array into
+     * {@link #segmentCells}, growing it as needed.
+     *
+     * @param dest the last cell of the segment
+     * @return the number of cells of the segment, dest first and the origin last
+     */
+    protected int traceSegment(int dest) {
+        int n = 0;
+        for (int cell = dest; cell != NO_CELL; cell = context.parent(cell)) {
+            addSegmentCell(n++, cell);
+        }
+        return n;
+    }
+
+    /**
+     * Store a cell of a traced segment.
+     *
+     * @param i    its index in {@link #segmentCells}
+     * @param cell the cell id
+     */
+    protected void addSegmentCell(int i, int cell) {
+        if (i == segmentCells.length) {
+            segmentCells = Arrays.copyOf(segmentCells, 2 * segmentCells.length);
+        }
+        segmentCells[i] = cell;
+    }
+
+    /**
+     * Check that every coordinate of a query is in the map
+     *
+     * @param coords coordinates of a query
+     * @throws IllegalArgumentException if one of them is not
+     */
+    private void checkInMap(List<Coordinate> coords) {
+        for (Coordinate coord : coords) {
+            if (!map.isIn(coord)) {
+                throw new IllegalArgumentException("Coordinate " + coord.getRow() + " " + coord.getColumn() + " is not in the map.");
+            }
+        }
+    }
+
+    /**
+     * Get the id of a coordinate
+     *
+     * @param coord a coordinate of the map
+     * @return its cell id
+     */
+    protected int cellOf(Coordinate coord) {
+        return coord.getRow() * sizeC + coord.getColumn();
+    }
+
+    /**
+     * Get the ids of a list of coordinates
+     *
+     * @param coords coordinates of the map
+     * @return their cell ids, in the same order
+     */
+    protected int[] toCells(List<Coordinate> coords) {
+        int[] cells = new int[coords.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = cellOf(coords.get(i));
+        }
+        return cells;
+    }
+
+    /**
+     * Get the map coordinate of a cell id
+     *
+     * @param cell a cell id
+     * @return the coordinate of the map
+     */
+    protected Coordinate toCoordinate(int cell) {
+        return map.getCell(cell / sizeC, cell % sizeC);
+    }
+
+    /**
+     * Use after findPath(), counting the queue entries that were polled after their cell
+     * had already been settled. Always 0 with a queue that supports decrease-key.
+     *
+     * @return the number of stale entries polled
+     */
+    public int stalePops() {
+        return stalePopCounter;
+    } // end of stalePops()
+
+    @Override
+    public int coordinatesExplored() {
+        return coordinatesExploredCounter;
+    } // end of coordinatesExplored()
+
+} // end of class GridDijkstraPathFinder
@@ -0,0 +1,109 @@
+package pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Finds the cheapest {@link WaypointTour} exactly with the Held-Karp dynamic program over
+ * subsets of waypoints, in O(2^n * n^2) time and O(2^n * n) memory for n waypoints.
+ * <p>
+ * best[set][last] is the cheapest way to leave from any origin, visit the waypoints in the set
+ * and stop at its member last. A set of one waypoint starts from the nearest origin of that
+ * waypoint, and every full tour finishes at the nearest destination of its last waypoint, so
+ * the choice of origin and destination is part of the optimisation.
+ */
+public class HeldKarpTourSolver implements TourSolver {
+
+    /**
+     * Largest number of waypoints the solver accepts; the tables take about 5 * 2^n * n bytes.
+     */
+    public static final int MAX_WAYPOINTS = 24;
+
+    // Cost of a state that cannot be reached
+    private static final int UNREACHABLE = WaypointTable.INFINITY;
+
+    @Override
+    public WaypointTour solve(WaypointTable table) {
+        int n = table.getWaypoints().size();
+        if (n > MAX_WAYPOINTS) {
+            throw new IllegalArgumentException(
+                    "Held-Karp supports at most " + MAX_WAYPOINTS + " waypoints, got " + n + ".");
+        }
+        int full = (1 << n) - 1;
+        int[] best = new int[(full + 1) * n];
+        // Waypoint visited just before the last one of every state, -1 for the first
+        byte[] previous = new byte[(full + 1) * n];
+        Arrays.fill(best, UNREACHABLE);
+        for (int j = 0; j < n; j++) {
+            int start = startCost(table, j);
+            if (start < UNREACHABLE) {
+                best[(1 << j) * n + j] = start;
+                previous[(1 << j) * n + j] = -1;
+            }
+        }
+        for (int set = 1; set <= full; set++) {
+            for (int last = 0; last < n; last++) {
+                int cost = best[set * n + last];
+                if (cost == UNREACHABLE) {
+                    continue;
+                }
+                for (int next = 0; next < n; next++) {
+                    int leg = table.waypointCost(last, next);
+                    if ((set & (1 << next)) != 0 || leg == UNREACHABLE) {
+                        continue;
+                    }
+                    int state = (set | (1 << next)) * n + next;
+                    if ((long) cost + leg < best[state]) {
+                        best[state] = cost + leg;
+                        previous[state] = (byte) last;
+                    }
+                }
+            }
+        }
+        long bestCost = UNREACHABLE;
+        int bestLast = -1;
+        for (int last = 0; last < n; last++) {
+            int finish = table.finishCost(last);
+            if (best[full * n + last] != UNREACHABLE && finish != UNREACHABLE
+                    && (long) best[full * n + last] + finish < bestCost) {
+                bestCost = (long) best[full * n + last] + finish;
+                bestLast = last;
+            }
+        }
+        if (bestLast == -1) {
+            return null;
+        }
+        // Walk the states back from the last waypoint to the first
+        int[] order = new int[n];
+        int set = full;
+        int last = bestLast;
+        for (int i = n - 1; i >= 0; i--) {
+            order[i] = last;
+            int before = previous[set * n + last];
+            set &= ~(1 << last);
+            last = before;
+        }
+        return new WaypointTour(nearestOrigin(table, order[0]), order,
+                table.nearestDestination(bestLast), (int) bestCost);
+    }
+
+    /**
+     * @return the cost from the nearest origin to a waypoint
+     */
+    private int startCost(WaypointTable table, int waypoint) {
+        return table.originCost(nearestOrigin(table, waypoint), waypoint);
+    }
+
+    /**
+     * @return the index of the origin with the cheapest path to a waypoint
+     */
+    private int nearestOrigin(WaypointTable table, int waypoint) {
+        int nearest = 0;
+        for (int origin = 1; origin < table.getOrigins().size(); origin++) {
+            if (table.originCost(origin, waypoint) < table.originCost(nearest, waypoint)) {
+                nearest = origin;
+            }
+        }
+        return nearest;
+    }
+
+} // end of class HeldKarpTourSolver
@@ -0,0 +1,341 @@
+package pathFinder;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anytime solver for waypoint queries too large for {@link HeldKarpTourSolver}. It starts from
+ * the nearest-neighbour order, improves it with 2-opt and Or-opt moves until no move helps, then
+ * keeps kicking the best order with a random double bridge (or a shuffle, for a few waypoints)
+ * and improving it again until the wall-clock or iteration budget runs out, and returns the best
+ * order found.
+ * <p>
+ * Every returned tour carries a lower bound on the optimal cost, see
+ * {@link WaypointTour#getLowerBound()}, so callers can report its gap to the bound. The bound
+ * is the assignment relaxation: the tour is closed into a cycle through a dummy terminal that
+ * stands for the origins and destinations, and the cheapest way to give every terminal one
+ * successor, solved with the Hungarian algorithm, cannot cost more than it.
+ */
+public class HeuristicTourSolver implements TourSolver {
+
+    /**
+     * Default wall-clock budget of a solve.
+     */
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+
+    // Cost given to a leg without a path, so that the local search can still move it
+    private static final long PENALTY = 1L << 40;
+    // Longest segment moved by an Or-opt move
+    private static final int OR_OPT_LENGTH = 3;
+    // Shortest order kicked with a double bridge; shorter ones are shuffled, as a double
+    // bridge has too few ways to cut them
+    private static final int DOUBLE_BRIDGE_LENGTH = 8;
+
+    private long timeBudgetMillis;
+    private long iterationBudget;
+    private WaypointTable table;
+    private Random random;
+    // System.nanoTime() at the start of the current solve
+    private long start;
+    // Number of kick-and-improve rounds of the last solve
+    private long iterations;
+
+    /**
+     * Solve with the default wall-clock budget and no iteration budget.
+     */
+    public HeuristicTourSolver() {
+        this(DEFAULT_TIME_BUDGET_MILLIS, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param timeBudgetMillis wall-clock budget of a solve, in milliseconds
+     * @param iterationBudget  largest number of kick-and-improve rounds of a solve
+     */
+    public HeuristicTourSolver(long timeBudgetMillis, long iterationBudget) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.iterationBudget = iterationBudget;
+    }
+
+    @Override
+    public WaypointTour solve(WaypointTable table) {
+        this.table = table;
+        random = new Random(table.getWaypoints().size());
+        start = System.nanoTime();
+        long lowerBound = computeLowerBound();
+        iterations = 0;
+
+        int[] best = nearestNeighbour();
+        improve(best);
+        long bestCost = cost(best);
+        while (iterations < iterationBudget && !outOfTime() && best.length > 1 && bestCost > lowerBound) {
+            iterations++;
+            int[] candidate = best.length >= DOUBLE_BRIDGE_LENGTH ? doubleBridge(best) : shuffle(best);
+            improve(candidate);
+            long candidateCost = cost(candidate);
+            if (candidateCost < bestCost) {
+                best = candidate;
+                bestCost = candidateCost;
+            }
+        }
+        if (bestCost >= WaypointTable.INFINITY) {
+            return null;
+        }
+        int last = best[best.length - 1];
+        return new WaypointTour(nearestOrigin(best[0]), best, table.nearestDestination(last), (int) bestCost,
+                (int) Math.min(lowerBound, bestCost));
+    }
+
+    /**
+     * @return the number of kick-and-improve rounds of the last solve
+     */
+    public long iterations() {
+        return iterations;
+    }
+
+    /**
+     * Start from the nearest origin of any waypoint and keep moving to the nearest unvisited one.
+     */
+    private int[] nearestNeighbour() {
+        int n = table.getWaypoints().size();
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        long bestStart = Long.MAX_VALUE;
+        for (int j = 0; j < n; j++) {
+            long start = leg(table.originCost(nearestOrigin(j), j));
+            if (start < bestStart) {
+                bestStart = start;
+                order[0] = j;
+            }
+        }
+        visited[order[0]] = true;
+        for (int i = 1; i < n; i++) {
+            long nearest = Long.MAX_VALUE;
+            for (int j = 0; j < n; j++) {
+                long cost = leg(table.waypointCost(order[i - 1], j));
+                if (!visited[j] && cost < nearest) {
+                    nearest = cost;
+                    order[i] = j;
+                }
+            }
+            visited[order[i]] = true;
+        }
+        return order;
+    }
+
+    /**
+     * Apply improving 2-opt and Or-opt moves to the order until none is left or time runs out.
+     */
+    private void improve(int[] order) {
+        int n = order.length;
+        int[] trial = new int[n];
+        long current = cost(order);
+        boolean improved = true;
+        while (improved && !outOfTime()) {
+            improved = false;
+            // 2-opt: reverse order[i..j]
+            for (int i = 0; i < n - 1 && !improved; i++) {
+                for (int j = i + 1; j < n && !improved; j++) {
+                    System.arraycopy(order, 0, trial, 0, n);
+                    for (int a = i, b = j; a < b; a++, b--) {
+                        int tmp = trial[a];
+                        trial[a] = trial[b];
+                        trial[b] = tmp;
+                    }
+                    long cost = cost(trial);
+                    if (cost < current) {
+                        System.arraycopy(trial, 0, order, 0, n);
+                        current = cost;
+                        improved = true;
+                    }
+                }
+            }
+            // Or-opt: move order[i..i+len-1] to another place
+            for (int len = 1; len <= OR_OPT_LENGTH && !improved; len++) {
+                for (int i = 0; i + len <= n && !improved; i++) {
+                    for (int to = 0; to + len <= n && !improved; to++) {
+                        if (to == i) {
+                            continue;
+                        }
+                        moveSegment(order, trial, i, len, to);
+                        long cost = cost(trial);
+                        if (cost < current) {
+                            System.arraycopy(trial, 0, order, 0, n);
+                            current = cost;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy order into trial with the segment of length len at i moved to start at to.
+     */
+    private void moveSegment(int[] order, int[] trial, int i, int len, int to) {
+        int n = order.length;
+        int k = 0;
+        for (int p = 0; p < n; p++) {
+            if (p < i || p >= i + len) {
+                trial[k++] = order[p];
+            }
+        }
+        // trial[0..n-len) holds the rest; insert the segment at to
+        System.arraycopy(trial, to, trial, to + len, n - len - to);
+        System.arraycopy(order, i, trial, to, len);
+    }
+
+    /**
+     * Cut the order into four parts A B C D at random and reconnect them as A C B D.
+     */
+    private int[] doubleBridge(int[] order) {
+        int n = order.length;
+        int p1 = 1 + random.nextInt(n - 3);
+        int p2 = p1 + 1 + random.nextInt(n - p1 - 2);
+        int p3 = p2 + 1 + random.nextInt(n - p2 - 1);
+        int[] kicked = new int[n];
+        int k = 0;
+        for (int p = 0; p < p1; p++) {
+            kicked[k++] = order[p];
+        }
+        for (int p = p2; p < p3; p++) {
+            kicked[k++] = order[p];
+        }
+        for (int p = p1; p < p2; p++) {
+            kicked[k++] = order[p];
+        }
+        for (int p = p3; p < n; p++) {
+            kicked[k++] = order[p];
+        }
+        return kicked;
+    }
+
+    /**
+     * Copy an order in a random order, as a kick for short orders.
+     */
+    private int[] shuffle(int[] order) {
+        int[] shuffled = order.clone();
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+        return shuffled;
+    }
+
+    /**
+     * Cost of an order from the nearest origin of its first waypoint to the nearest destination
+     * of its last, with legs without a path counted as {@link #PENALTY}.
+     */
+    private long cost(int[] order) {
+        long total = leg(table.originCost(nearestOrigin(order[0]), order[0]));
+        for (int i = 1; i < order.length; i++) {
+            total += leg(table.waypointCost(order[i - 1], order[i]));
+        }
+        return total + leg(table.finishCost(order[order.length - 1]));
+    }
+
+    private long leg(int cost) {
+        return cost == WaypointTable.INFINITY ? PENALTY : cost;
+    }
+
+    /**
+     * Assignment bound of the tour closed through a dummy terminal 0: the dummy leads to every
+     * waypoint at the cost from its nearest origin, and every waypoint leads back to the dummy
+     * at the cost to its nearest destination.
+     *
+     * @return the bound, {@link WaypointTable#INFINITY} if it shows that no tour exists
+     */
+    private long computeLowerBound() {
+        int n = table.getWaypoints().size();
+        long[][] cost = new long[n + 1][n + 1];
+        cost[0][0] = PENALTY;
+        for (int j = 0; j < n; j++) {
+            cost[0][j + 1] = leg(table.originCost(nearestOrigin(j), j));
+            cost[j + 1][0] = leg(table.finishCost(j));
+            for (int i = 0; i < n; i++) {
+                cost[i + 1][j + 1] = i == j ? PENALTY : leg(table.waypointCost(i, j));
+            }
+        }
+        long bound = assignmentCost(cost);
+        return bound >= PENALTY ? WaypointTable.INFINITY : Math.min(bound, WaypointTable.INFINITY);
+    }
+
+    /**
+     * Cost of the cheapest assignment of a square cost matrix, with the O(m^3) Hungarian
+     * algorithm over row and column potentials.
+     */
+    private long assignmentCost(long[][] cost) {
+        int m = cost.length;
+        long[] rowPotential = new long[m + 1];
+        long[] colPotential = new long[m + 1];
+        // Row assigned to every column, 1-based, 0 for none
+        int[] assigned = new int[m + 1];
+        int[] way = new int[m + 1];
+        for (int row = 1; row <= m; row++) {
+            assigned[0] = row;
+            int col = 0;
+            long[] minSlack = new long[m + 1];
+            boolean[] used = new boolean[m + 1];
+            Arrays.fill(minSlack, Long.MAX_VALUE);
+            do {
+                used[col] = true;
+                int r = assigned[col];
+                long delta = Long.MAX_VALUE;
+                int next = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        long slack = cost[r - 1][j - 1] - rowPotential[r] - colPotential[j];
+                        if (slack < minSlack[j]) {
+                            minSlack[j] = slack;
+                            way[j] = col;
+                        }
+                        if (minSlack[j] < delta) {
+                            delta = minSlack[j];
+                            next = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        rowPotential[assigned[j]] += delta;
+                        colPotential[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+                col = next;
+            } while (assigned[col] != 0);
+            do {
+                int prev = way[col];
+                assigned[col] = assigned[prev];
+                col = prev;
+            } while (col != 0);
+        }
+        long total = 0;
+        for (int j = 1; j <= m; j++) {
+            total += cost[assigned[j] - 1][j - 1];
+        }
+        return total;
+    }
+
+    /**
+     * @return the index of the origin with the cheapest path to a waypoint
+     */
+    private int nearestOrigin(int waypoint) {
+        int nearest = 0;
+        for (int origin = 1; origin < table.getOrigins().size(); origin++) {
+            if (table.originCost(origin, waypoint) < table.originCost(nearest, waypoint)) {
+                nearest = origin;
+            }
+        }
+        return nearest;
+    }
+
+    private boolean outOfTime() {
+        return System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+    }
+
+} // end of class HeuristicTourSolver
@@ -0,0 +1,122 @@
+package pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap over cell ids with a real decrease-key. The position of every
+ * queued cell is kept in an array indexed by cell id, so the heap never holds more than
+ * one entry per cell and the search never polls a stale entry.
+ */
+public class IndexedCellHeap implements CellQueue {
+
+    // Position of a cell that is not in the heap
+    private static final int ABSENT = -1;
+
+    // Number of children of every heap node
+    private final int arity;
+    // Queued cells in heap order
+    private final int[] cells;
+    // Key of every queued cell, in heap order
+    private final int[] keys;
+    // Heap position of every cell id
+    private final int[] positions;
+    private int size;
+
+    /**
+     * @param cellCount number of cell ids of the map
+     * @param arity     number of children of every heap node, at least 2
+     */
+    public IndexedCellHeap(int cellCount, int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Heap arity must be 2 or more.");
+        }
+        this.arity = arity;
+        cells = new int[cellCount];
+        keys = new int[cellCount];
+        positions = new int[cellCount];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    @Override
+    public void clear() {
+        // Only the queued cells have a position to reset
+        for (int i = 0; i < size; i++) {
+            positions[cells[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void offer(int cell, int key) {
+        int i = positions[cell];
+        if (i == ABSENT) {
+            i = size++;
+        } else if (key >= keys[i]) {
+            return;
+        }
+        siftUp(i, cell, key);
+    }
+
+    @Override
+    public int poll() {
+        int top = cells[0];
+        positions[top] = ABSENT;
+        size--;
+        if (size > 0) {
+            siftDown(0, cells[size], keys[size]);
+        }
+        return top;
+    }
+
+    /**
+     * Move a cell from position i towards the root until its parent has a smaller key.
+     */
+    private void siftUp(int i, int cell, int key) {
+        while (i > 0) {
+            int parent = (i - 1) / arity;
+            if (keys[parent] <= key) {
+                break;
+            }
+            place(i, cells[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, cell, key);
+    }
+
+    /**
+     * Move a cell from position i towards the leaves until no child has a smaller key.
+     */
+    private void siftDown(int i, int cell, int key) {
+        while (true) {
+            int first = i * arity + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + arity, size);
+            int min = first;
+            for (int child = first + 1; child < last; child++) {
+                if (keys[child] < keys[min]) {
+                    min = child;
+                }
+            }
+            if (key <= keys[min]) {
+                break;
+            }
+            place(i, cells[min], keys[min]);
+            i = min;
+        }
+        place(i, cell, key);
+    }
+
+    private void place(int i, int cell, int key) {
+        cells[i] = cell;
+        keys[i] = key;
+        positions[cell] = i;
+    }
+
+} // end of class IndexedCellHeap
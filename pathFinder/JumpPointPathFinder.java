@@ -0,0 +1,254 @@
+package pathFinder;
+
+import map.GridGraph;
+import map.MapChangeListener;
+import map.PathMap;
+
+import java.util.BitSet;
+
+/**
+ * Jump Point Search for the 4-connected grid of a {@link PathMap}, on top of
+ * {@link AStarPathFinder}.
+ * <p>
+ * A cell is open when it is passable and costs the smallest terrain cost of the map, and plain
+ * when it is open and each of its neighbours is open or impassable. Across plain cells the
+ * canonical shortest paths move vertically first: a vertical jump scans left and right at every
+ * step and stops where one of those scans finds something, and a horizontal jump only stops at
+ * a forced neighbour, i.e. a passable cell above or below whose way around is not open. Jumps
+ * also stop at destinations and at the first cell that is not plain. Cells that are not plain are
+ * expanded to their four neighbours one step at a time, as Dijkstra's algorithm does, so paths
+ * stay optimal across terrain-cost boundaries.
+ * <p>
+ * Only jump points are settled and linked through the parent array; the cells between them are
+ * filled in when the path is built, so the returned path is still continuous.
+ * <p>
+ * The finder and its graph register themselves with
+ * {@link PathMap#addChangeListener(MapChangeListener)}, so a change of the map between searches
+ * reclassifies the changed cell and its four neighbours, or every cell if the smallest terrain
+ * cost of the map changed.
+ */
+public class JumpPointPathFinder extends AStarPathFinder implements MapChangeListener {
+
+    // Arrival directions: none for origins, then right, left, down and up
+    private static final byte NONE = 0;
+    private static final byte RIGHT = 1;
+    private static final byte LEFT = 2;
+    private static final byte DOWN = 3;
+    private static final byte UP = 4;
+    // Row and column step of every direction
+    private static final int[] ROW_STEP = {0, 0, 0, 1, -1};
+    private static final int[] COL_STEP = {0, 1, -1, 0, 0};
+
+    // Number of rows of the map
+    private int sizeR;
+    // Terrain cost of the open cells
+    private int openCost;
+    // Passable cells that cost openCost
+    private BitSet openCells;
+    // Open cells whose neighbours are all open or impassable
+    private BitSet plainCells;
+    // Direction from the parent of every reached cell
+    private byte[] arrivals;
+
+    /**
+     * Initialize the search with a {@link PathMap} instance and classify its cells. Jumps
+     * read the map directly, so the search runs over a {@link GridGraph} and no edge is stored.
+     *
+     * @param map a grid representation of the graph
+     */
+    public JumpPointPathFinder(PathMap map) {
+        super(map, new GridGraph(map));
+        sizeR = map.sizeR;
+        arrivals = new byte[cellCount];
+        openCells = new BitSet(cellCount);
+        plainCells = new BitSet(cellCount);
+        classifyCells();
+        map.addChangeListener((MapChangeListener) graph);
+        map.addChangeListener(this);
+    } // end of JumpPointPathFinder()
+
+    /**
+     * Classify every cell as open and plain or not, for the smallest terrain cost of the map.
+     */
+    private void classifyCells() {
+        openCost = map.minTerrainCost();
+        openCells.clear();
+        plainCells.clear();
+        for (int r = 0; r < sizeR; r++) {
+            for (int c = 0; c < sizeC; c++) {
+                if (map.isPassable(r, c) && map.terrainCost(r, c) == openCost) {
+                    openCells.set(r * sizeC + c);
+                }
+            }
+        }
+        for (int r = 0; r < sizeR; r++) {
+            for (int c = 0; c < sizeC; c++) {
+                classifyPlain(r, c);
+            }
+        }
+    } // end of classifyCells()
+
+    /**
+     * Check whether (r, c) is plain, from the open cells around it.
+     */
+    private void classifyPlain(int r, int c) {
+        if (r < 0 || r >= sizeR || c < 0 || c >= sizeC) {
+            return;
+        }
+        plainCells.set(r * sizeC + c, isOpen(r, c) && isOpenOrBlocked(r + 1, c) && isOpenOrBlocked(r - 1, c)
+                && isOpenOrBlocked(r, c + 1) && isOpenOrBlocked(r, c - 1));
+    }
+
+    /**
+     * Reclassify a changed cell and the neighbours whose plainness depends on it. Called on
+     * the thread that changed the map, which must not be searching with this finder.
+     */
+    @Override
+    public void cellChanged(int r, int c, long version) {
+        if (map.minTerrainCost() != openCost) {
+            // the open cells are those of another cost now
+            classifyCells();
+            return;
+        }
+        openCells.set(r * sizeC + c, map.isPassable(r, c) && map.terrainCost(r, c) == openCost);
+        classifyPlain(r, c);
+        classifyPlain(r + 1, c);
+        classifyPlain(r - 1, c);
+        classifyPlain(r, c + 1);
+        classifyPlain(r, c - 1);
+    } // end of cellChanged()
+
+    /**
+     * Expand a settled cell: jump from plain cells in the directions that the arrival
+     * direction does not prune, and step to all passable neighbours of the other cells.
+     *
+     * @param cell the settled cell
+     */
+    @Override
+    protected void updateNeighbors(int cell) {
+        int r = cell / sizeC;
+        int c = cell % sizeC;
+        if (!map.isPassable(r, c)) {
+            return;
+        }
+        if (!plainCells.get(cell)) {
+            for (byte dir = RIGHT; dir <= UP; dir++) {
+                if (map.isPassable(r + ROW_STEP[dir], c + COL_STEP[dir])) {
+                    addSuccessor(cell, (r + ROW_STEP[dir]) * sizeC + c + COL_STEP[dir], dir);
+                }
+            }
+            return;
+        }
+        byte arrival = context.parent(cell) == NO_CELL ? NONE : arrivals[cell];
+        if (arrival == NONE) {
+            for (byte dir = RIGHT; dir <= UP; dir++) {
+                jumpFrom(cell, dir);
+            }
+        } else if (arrival == RIGHT || arrival == LEFT) {
+            jumpFrom(cell, arrival);
+            int back = c - COL_STEP[arrival];
+            if (map.isPassable(r + 1, c) && !isOpen(r + 1, back)) {
+                jumpFrom(cell, DOWN);
+            }
+            if (map.isPassable(r - 1, c) && !isOpen(r - 1, back)) {
+                jumpFrom(cell, UP);
+            }
+        } else {
+            jumpFrom(cell, arrival);
+            jumpFrom(cell, RIGHT);
+            jumpFrom(cell, LEFT);
+        }
+    }
+
+    /**
+     * Jump from a cell in one direction and relax the jump point found, if any.
+     */
+    private void jumpFrom(int cell, byte dir) {
+        int jumpPoint = jump(cell / sizeC, cell % sizeC, dir);
+        if (jumpPoint != NO_CELL) {
+            addSuccessor(cell, jumpPoint, dir);
+        }
+    }
+
+    /**
+     * Relax a cell reached in a straight line. All cells between the two are open.
+     */
+    private void addSuccessor(int cell, int successor, byte dir) {
+        int steps = Math.abs(successor / sizeC - cell / sizeC) + Math.abs(successor % sizeC - cell % sizeC);
+        int cost = (steps - 1) * openCost + map.terrainCost(successor / sizeC, successor % sizeC);
+        if (relax(cell, successor, context.distance(cell) + cost)) {
+            arrivals[successor] = dir;
+        }
+    }
+
+    /**
+     * Move from (r, c) in a direction until reaching a jump point: a destination, a cell
+     * that is not plain, a horizontal forced neighbour, or a vertical step from which a
+     * horizontal jump finds a jump point.
+     *
+     * @return the jump point, or {@link #NO_CELL} if the jump runs into an impassable cell
+     */
+    private int jump(int r, int c, byte dir) {
+        int rowStep = ROW_STEP[dir];
+        int colStep = COL_STEP[dir];
+        while (true) {
+            r += rowStep;
+            c += colStep;
+            if (!map.isPassable(r, c)) {
+                return NO_CELL;
+            }
+            int cell = r * sizeC + c;
+            if (targetCells.get(cell) || !plainCells.get(cell)) {
+                return cell;
+            }
+            if (rowStep == 0) {
+                int back = c - colStep;
+                if ((map.isPassable(r + 1, c) && !isOpen(r + 1, back))
+                        || (map.isPassable(r - 1, c) && !isOpen(r - 1, back))) {
+                    return cell;
+                }
+            } else if (jump(r, c, RIGHT) != NO_CELL || jump(r, c, LEFT) != NO_CELL) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * Backtrace from a settled cell through the jump points and fill in the straight
+     * stretches between them.
+     *
+     * @param dest the last cell of the segment
+     * @return the number of cells of the segment, dest first and the origin last
+     */
+    @Override
+    protected int traceSegment(int dest) {
+        int n = 0;
+        int cell = dest;
+        while (context.parent(cell) != NO_CELL) {
+            int parent = context.parent(cell);
+            int rowStep = Integer.signum(parent / sizeC - cell / sizeC);
+            int colStep = Integer.signum(parent % sizeC - cell % sizeC);
+            for (int r = cell / sizeC, c = cell % sizeC; r * sizeC + c != parent; r += rowStep, c += colStep) {
+                addSegmentCell(n++, r * sizeC + c);
+            }
+            cell = parent;
+        }
+        addSegmentCell(n++, cell);
+        return n;
+    }
+
+    /**
+     * Check whether (r, c) is passable and costs the terrain cost of the open cells.
+     */
+    private boolean isOpen(int r, int c) {
+        return r >= 0 && r < sizeR && c >= 0 && c < sizeC && openCells.get(r * sizeC + c);
+    }
+
+    /**
+     * Check whether (r, c) is open or cannot be entered at all.
+     */
+    private boolean isOpenOrBlocked(int r, int c) {
+        return !map.isPassable(r, c) || isOpen(r, c);
+    }
+
+} // end of class JumpPointPathFinder
@@ -0,0 +1,154 @@
+package pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap over cell ids with long keys, whose cells can have their key raised
+ * or lowered and be removed from anywhere in the heap, as incremental searches need.
+ */
+public class KeyedCellHeap {
+
+    // Position of a cell that is not in the heap
+    private static final int ABSENT = -1;
+
+    // Queued cells in heap order
+    private final int[] cells;
+    // Key of every queued cell, in heap order
+    private final long[] keys;
+    // Heap position of every cell id
+    private final int[] positions;
+    private int size;
+
+    /**
+     * @param cellCount number of cell ids
+     */
+    public KeyedCellHeap(int cellCount) {
+        cells = new int[cellCount];
+        keys = new long[cellCount];
+        positions = new int[cellCount];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    /**
+     * Remove all cells from the heap.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[cells[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param cell a cell id
+     * @return true if the cell is in the heap
+     */
+    public boolean contains(int cell) {
+        return positions[cell] != ABSENT;
+    }
+
+    /**
+     * Add a cell, or change its key if it is already in the heap.
+     *
+     * @param cell the cell id
+     * @param key  its new key
+     */
+    public void update(int cell, long key) {
+        int i = positions[cell];
+        if (i == ABSENT) {
+            siftUp(size++, cell, key);
+        } else if (key < keys[i]) {
+            siftUp(i, cell, key);
+        } else {
+            siftDown(i, cell, key);
+        }
+    }
+
+    /**
+     * Remove a cell if it is in the heap.
+     *
+     * @param cell the cell id
+     */
+    public void remove(int cell) {
+        int i = positions[cell];
+        if (i == ABSENT) {
+            return;
+        }
+        positions[cell] = ABSENT;
+        size--;
+        if (i < size) {
+            int last = cells[size];
+            long lastKey = keys[size];
+            if (lastKey < keys[i]) {
+                siftUp(i, last, lastKey);
+            } else {
+                siftDown(i, last, lastKey);
+            }
+        }
+    }
+
+    /**
+     * @return the smallest key, or Long.MAX_VALUE if the heap is empty
+     */
+    public long peekKey() {
+        return size == 0 ? Long.MAX_VALUE : keys[0];
+    }
+
+    /**
+     * Remove the cell with the smallest key.
+     *
+     * @return the cell
+     */
+    public int poll() {
+        int top = cells[0];
+        remove(top);
+        return top;
+    }
+
+    /**
+     * Move a cell from position i towards the root until its parent has a smaller key.
+     */
+    private void siftUp(int i, int cell, long key) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            place(i, cells[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, cell, key);
+    }
+
+    /**
+     * Move a cell from position i towards the leaves until no child has a smaller key.
+     */
+    private void siftDown(int i, int cell, long key) {
+        while (true) {
+            int child = i * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            place(i, cells[child], keys[child]);
+            i = child;
+        }
+        place(i, cell, key);
+    }
+
+    private void place(int i, int cell, long key) {
+        cells[i] = cell;
+        keys[i] = key;
+        positions[cell] = i;
+    }
+
+} // end of class KeyedCellHeap
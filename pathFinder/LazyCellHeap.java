@@ -0,0 +1,64 @@
+package pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of (key, cell) pairs, each packed into one long. It has no decrease-key:
+ * every improvement queues the cell again and the stale entries are skipped by the search
+ * when they are polled, like the {@link java.util.PriorityQueue} of {@link DijkstraPathFinder}.
+ */
+public class LazyCellHeap implements CellQueue {
+
+    private long[] heap = new long[16];
+    private int size;
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void offer(int cell, int key) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        long entry = ((long) key << 32) | cell;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    @Override
+    public int poll() {
+        long top = heap[0];
+        long last = heap[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return (int) top;
+    }
+
+} // end of class LazyCellHeap
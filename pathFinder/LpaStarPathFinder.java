@@ -0,0 +1,326 @@
+package pathFinder;
+
+import map.Coordinate;
+import map.MapChangeListener;
+import map.PathMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Lifelong Planning A* over the 4-connected grid of a {@link PathMap}, for maps that change
+ * between searches.
+ * <p>
+ * The search tree is kept across calls of {@link #findPath()}: after some cells became impassable,
+ * passable or changed their terrain cost, {@link #cellsChanged(Collection)} marks them and the next
+ * call repairs only the distances those changes affect, instead of searching again from scratch.
+ * The finder registers itself with {@link PathMap#addChangeListener(MapChangeListener)} to collect
+ * the changed cells, until it is removed with {@link PathMap#removeChangeListener(MapChangeListener)}.
+ * <p>
+ * Every cell has its distance g from the origins and a one-step lookahead rhs computed from the
+ * distances of its neighbours; a cell whose two values differ is queued with the key
+ * [min(g, rhs) + h; min(g, rhs)]. All destinations lead to one virtual goal at cost 0, so the
+ * path found goes from the nearest origin to the nearest destination. The heuristic h is the
+ * Manhattan distance to the nearest destination times the smallest terrain cost seen, which is
+ * consistent since every step costs at least that much.
+ * <p>
+ * The map is read live, so the finder must not be shared by threads that change it. Waypoints
+ * are not supported.
+ */
+public class LpaStarPathFinder implements PathFinder, MapChangeListener {
+
+    private static final int INFINITY = SearchContext.INFINITY;
+
+    // Row and column step to each of the four neighbours
+    private static final int[] ROW_STEP = {1, -1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+
+    private PathMap map;
+    private int sizeR;
+    private int sizeC;
+    private int cellCount;
+    // Id of the virtual goal that all destinations lead to
+    private int goal;
+    private BitSet originCells;
+    private BitSet destinationCells;
+    private int[] destRows;
+    private int[] destCols;
+    // Heuristic factor: the smallest terrain cost seen
+    private int minCost;
+    // Distance of every cell from the origins, and its one-step lookahead
+    private int[] g;
+    private int[] rhs;
+    // Cells whose g and rhs differ
+    private KeyedCellHeap queue;
+    // Cells changed on the map since the last search
+    private List<Coordinate> changedCells = new ArrayList<>();
+    protected int coordinatesExploredCounter = 0;
+
+    /**
+     * Initialize the search with a {@link PathMap} instance and register with it for its
+     * changes. Its origins and destinations are those of every path found.
+     *
+     * @param map a grid representation of the graph
+     * @throws IllegalArgumentException if the map has waypoints
+     */
+    public LpaStarPathFinder(PathMap map) {
+        if (map.waypointCells != null && !map.waypointCells.isEmpty()) {
+            throw new IllegalArgumentException("Incremental planning does not support waypoints.");
+        }
+        this.map = map;
+        sizeR = map.sizeR;
+        sizeC = map.sizeC;
+        cellCount = sizeR * sizeC;
+        goal = cellCount;
+        originCells = new BitSet(cellCount);
+        for (Coordinate origin : map.originCells) {
+            originCells.set(origin.getRow() * sizeC + origin.getColumn());
+        }
+        destinationCells = new BitSet(cellCount);
+        destRows = new int[map.destCells.size()];
+        destCols = new int[map.destCells.size()];
+        for (int i = 0; i < destRows.length; i++) {
+            destRows[i] = map.destCells.get(i).getRow();
+            destCols[i] = map.destCells.get(i).getColumn();
+            destinationCells.set(destRows[i] * sizeC + destCols[i]);
+        }
+        minCost = map.minTerrainCost();
+        g = new int[cellCount + 1];
+        rhs = new int[cellCount + 1];
+        queue = new KeyedCellHeap(cellCount + 1);
+        initialize();
+        map.addChangeListener(this);
+    } // end of LpaStarPathFinder()
+
+    /**
+     * Forget the search tree: only the origins are queued, at distance 0.
+     */
+    private void initialize() {
+        Arrays.fill(g, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        queue.clear();
+        for (int origin = originCells.nextSetBit(0); origin >= 0; origin = originCells.nextSetBit(origin + 1)) {
+            rhs[origin] = 0;
+            queue.update(origin, key(origin));
+        }
+    } // end of initialize()
+
+    @Override
+    public List<Coordinate> findPath() {
+        if (!changedCells.isEmpty()) {
+            cellsChanged(changedCells);
+            changedCells.clear();
+        }
+        computeShortestPath();
+        LinkedList<Coordinate> path = new LinkedList<>();
+        if (g[goal] == INFINITY) {
+            return path;
+        }
+        int cell = nearestDestination();
+        path.addFirst(map.getCell(cell / sizeC, cell % sizeC));
+        while (!(originCells.get(cell) && g[cell] == 0)) {
+            // a path visits every cell at most once; a longer walk follows distances that
+            // were not repaired after a change of the map
+            if (path.size() > cellCount) {
+                throw new IllegalStateException("The search tree is out of date with the map.");
+            }
+            cell = bestPredecessor(cell);
+            path.addFirst(map.getCell(cell / sizeC, cell % sizeC));
+        }
+        System.out.println("Total cost: " + g[goal]);
+        return path;
+    } // end of findPath()
+
+    /**
+     * Tell the finder that cells changed their passability or terrain cost since the last search,
+     * so that the next {@link #findPath()} repairs the distances through them.
+     *
+     * @param cells the changed cells
+     */
+    public void cellsChanged(Collection<? extends Coordinate> cells) {
+        for (Coordinate coord : cells) {
+            int r = coord.getRow();
+            int c = coord.getColumn();
+            if (map.isPassable(r, c) && map.terrainCost(r, c) < minCost) {
+                // the heuristic would overestimate, so start again with a smaller factor
+                minCost = map.terrainCost(r, c);
+                initialize();
+                return;
+            }
+        }
+        for (Coordinate coord : cells) {
+            int r = coord.getRow();
+            int c = coord.getColumn();
+            updateCell(r * sizeC + c);
+            for (int k = 0; k < ROW_STEP.length; k++) {
+                int nr = r + ROW_STEP[k];
+                int nc = c + COL_STEP[k];
+                if (map.isIn(nr, nc)) {
+                    updateCell(nr * sizeC + nc);
+                }
+            }
+        }
+    } // end of cellsChanged()
+
+    /**
+     * Note a change of the map, to be repaired by the next {@link #findPath()}.
+     */
+    @Override
+    public void cellChanged(int r, int c, long version) {
+        changedCells.add(new Coordinate(r, c));
+    }
+
+    /**
+     * @return the distance of the last path found, or INFINITY if there is none
+     */
+    public int pathCost() {
+        return g[goal];
+    }
+
+    @Override
+    public int coordinatesExplored() {
+        return coordinatesExploredCounter;
+    } // end of cellsExplored()
+
+    /**
+     * Expand queued cells until the virtual goal is locally consistent and every queued key is
+     * larger than its own. Only destinations can tie with the goal, and one whose distance is
+     * about to grow must be expanded before the goal can rely on it.
+     */
+    private void computeShortestPath() {
+        while ((!queue.isEmpty() && queue.peekKey() <= key(goal)) || rhs[goal] != g[goal]) {
+            int cell = queue.poll();
+            coordinatesExploredCounter++;
+            if (g[cell] > rhs[cell]) {
+                g[cell] = rhs[cell];
+                updateSuccessors(cell);
+            } else {
+                g[cell] = INFINITY;
+                updateCell(cell);
+                updateSuccessors(cell);
+            }
+        }
+    } // end of computeShortestPath()
+
+    private void updateSuccessors(int cell) {
+        if (cell == goal) {
+            return;
+        }
+        int r = cell / sizeC;
+        int c = cell % sizeC;
+        if (map.isPassable(r, c)) {
+            for (int k = 0; k < ROW_STEP.length; k++) {
+                int nr = r + ROW_STEP[k];
+                int nc = c + COL_STEP[k];
+                if (map.isIn(nr, nc)) {
+                    updateCell(nr * sizeC + nc);
+                }
+            }
+        }
+        if (destinationCells.get(cell)) {
+            updateCell(goal);
+        }
+    } // end of updateSuccessors()
+
+    /**
+     * Recompute the lookahead of a cell and queue it if it differs from the distance.
+     */
+    private void updateCell(int cell) {
+        if (!originCells.get(cell)) {
+            rhs[cell] = lookahead(cell);
+        }
+        if (g[cell] != rhs[cell]) {
+            queue.update(cell, key(cell));
+        } else {
+            queue.remove(cell);
+        }
+    } // end of updateCell()
+
+    /**
+     * Smallest distance to a cell through one of its predecessors.
+     */
+    private int lookahead(int cell) {
+        if (cell == goal) {
+            int best = INFINITY;
+            for (int i = 0; i < destRows.length; i++) {
+                best = Math.min(best, g[destRows[i] * sizeC + destCols[i]]);
+            }
+            return best;
+        }
+        int best = bestPredecessor(cell);
+        if (best == SearchContext.NO_CELL || g[best] == INFINITY) {
+            return INFINITY;
+        }
+        return g[best] + map.terrainCost(cell / sizeC, cell % sizeC);
+    } // end of lookahead()
+
+    /**
+     * The passable neighbour with the smallest distance that a cell can be entered from, or
+     * NO_CELL if the cell is impassable or has no such neighbour.
+     */
+    private int bestPredecessor(int cell) {
+        int r = cell / sizeC;
+        int c = cell % sizeC;
+        if (!map.isPassable(r, c)) {
+            return SearchContext.NO_CELL;
+        }
+        int best = SearchContext.NO_CELL;
+        for (int k = 0; k < ROW_STEP.length; k++) {
+            int nr = r + ROW_STEP[k];
+            int nc = c + COL_STEP[k];
+            if (map.isIn(nr, nc) && map.isPassable(nr, nc)) {
+                int neighbor = nr * sizeC + nc;
+                if (best == SearchContext.NO_CELL || g[neighbor] < g[best]) {
+                    best = neighbor;
+                }
+            }
+        }
+        return best;
+    } // end of bestPredecessor()
+
+    /**
+     * The destination that the distance of the virtual goal comes from.
+     */
+    private int nearestDestination() {
+        for (int i = 0; i < destRows.length; i++) {
+            int cell = destRows[i] * sizeC + destCols[i];
+            if (g[cell] == g[goal]) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("No destination at distance " + g[goal] + ".");
+    } // end of nearestDestination()
+
+    /**
+     * Priority of a cell, [min(g, rhs) + h; min(g, rhs)] packed into one long.
+     */
+    private long key(int cell) {
+        int distance = Math.min(g[cell], rhs[cell]);
+        if (distance == INFINITY) {
+            return Long.MAX_VALUE;
+        }
+        return (distance + heuristic(cell)) << 32 | distance;
+    } // end of key()
+
+    /**
+     * Manhattan distance to the nearest destination, times the smallest terrain cost; 0 without
+     * destinations, as nothing can be reached then.
+     */
+    private long heuristic(int cell) {
+        if (cell == goal || destRows.length == 0) {
+            return 0;
+        }
+        int r = cell / sizeC;
+        int c = cell % sizeC;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < destRows.length; i++) {
+            best = Math.min(best, Math.abs(r - destRows[i]) + Math.abs(c - destCols[i]));
+        }
+        return best * minCost;
+    } // end of heuristic()
+
+} // end of class LpaStarPathFinder
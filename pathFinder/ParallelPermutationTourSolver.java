@@ -0,0 +1,165 @@
+package pathFinder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Finds the cheapest {@link WaypointTour} by trying every origin with every visiting order of
+ * the waypoints, like {@link PermutationTourSolver}, but splits the orders across a
+ * {@link ForkJoinPool} by their prefix. Every task keeps its own prefix and cost, and all tasks
+ * share the best tour found so far, so a prefix is cut as soon as its cost reaches the best
+ * complete tour of any task.
+ */
+public class ParallelPermutationTourSolver implements TourSolver {
+
+    /**
+     * Default number of unplaced waypoints up to which a task extends its prefix itself
+     * instead of forking a subtask for every next waypoint.
+     */
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 7;
+
+    private ForkJoinPool pool;
+    private int sequentialThreshold;
+
+    /**
+     * Solve on the common pool with the default sequential threshold.
+     */
+    public ParallelPermutationTourSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+
+    /**
+     * @param pool                the pool to run the tasks on
+     * @param sequentialThreshold number of unplaced waypoints up to which tasks stop forking
+     */
+    public ParallelPermutationTourSolver(ForkJoinPool pool, int sequentialThreshold) {
+        this.pool = pool;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    @Override
+    public WaypointTour solve(WaypointTable table) {
+        int n = table.getWaypoints().size();
+        if (n > 31) {
+            throw new IllegalArgumentException("At most 31 waypoints are supported, got " + n + ".");
+        }
+        AtomicReference<WaypointTour> best = new AtomicReference<>();
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                PrefixTask[] tasks = new PrefixTask[table.getOrigins().size() * n];
+                int t = 0;
+                for (int origin = 0; origin < table.getOrigins().size(); origin++) {
+                    for (int first = 0; first < n; first++) {
+                        int[] order = new int[n];
+                        order[0] = first;
+                        tasks[t++] = new PrefixTask(table, best, sequentialThreshold, origin, order, 1, 1 << first,
+                                table.originCost(origin, first));
+                    }
+                }
+                invokeAll(tasks);
+            }
+        });
+        return best.get();
+    }
+
+    /**
+     * Extends one prefix of a visiting order with every unplaced waypoint.
+     */
+    private static class PrefixTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private WaypointTable table;
+        private AtomicReference<WaypointTour> best;
+        private int sequentialThreshold;
+        private int origin;
+        // Visiting order, placed up to length
+        private int[] order;
+        private int length;
+        // Bit set of the placed waypoints
+        private int placed;
+        // Cost from the origin to the last placed waypoint
+        private long cost;
+
+        PrefixTask(WaypointTable table, AtomicReference<WaypointTour> best, int sequentialThreshold,
+                   int origin, int[] order, int length, int placed, long cost) {
+            this.table = table;
+            this.best = best;
+            this.sequentialThreshold = sequentialThreshold;
+            this.origin = origin;
+            this.order = order;
+            this.length = length;
+            this.placed = placed;
+            this.cost = cost;
+        }
+
+        @Override
+        protected void compute() {
+            if (order.length - length <= sequentialThreshold) {
+                extend(order, length, placed, cost);
+                return;
+            }
+            if (cost >= bestCost()) {
+                return;
+            }
+            int last = order[length - 1];
+            PrefixTask[] tasks = new PrefixTask[order.length - length];
+            int t = 0;
+            for (int next = 0; next < order.length; next++) {
+                if ((placed & (1 << next)) == 0) {
+                    int[] copy = order.clone();
+                    copy[length] = next;
+                    tasks[t++] = new PrefixTask(table, best, sequentialThreshold, origin, copy, length + 1,
+                            placed | (1 << next), cost + table.waypointCost(last, next));
+                }
+            }
+            invokeAll(tasks);
+        }
+
+        /**
+         * Depth-first search over the rest of the order on this task's own arrays.
+         */
+        private void extend(int[] order, int length, int placed, long cost) {
+            if (cost >= bestCost()) {
+                return;
+            }
+            int last = order[length - 1];
+            if (length == order.length) {
+                record(cost + table.finishCost(last), order);
+                return;
+            }
+            for (int next = 0; next < order.length; next++) {
+                if ((placed & (1 << next)) == 0) {
+                    order[length] = next;
+                    extend(order, length + 1, placed | (1 << next), cost + table.waypointCost(last, next));
+                }
+            }
+        }
+
+        /**
+         * @return the cost of the best complete tour of all tasks so far
+         */
+        private long bestCost() {
+            WaypointTour tour = best.get();
+            return tour == null ? WaypointTable.INFINITY : tour.getCost();
+        }
+
+        /**
+         * Share a complete tour if it is cheaper than the best one of all tasks.
+         */
+        private void record(long total, int[] order) {
+            WaypointTour current = best.get();
+            while (total < (current == null ? WaypointTable.INFINITY : current.getCost())) {
+                int last = order[order.length - 1];
+                WaypointTour tour = new WaypointTour(origin, order.clone(), table.nearestDestination(last), (int) total);
+                if (best.compareAndSet(current, tour)) {
+                    return;
+                }
+                current = best.get();
+            }
+        }
+    }
+
+} // end of class ParallelPermutationTourSolver
@@ -0,0 +1,75 @@
+package pathFinder;
+
+import map.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One path query against a loaded map: the origins, destinations and waypoints of a path.
+ * The lists are copied, so a query can be handed to other threads.
+ */
+public class PathQuery {
+
+    private final List<Coordinate> origins;
+    private final List<Coordinate> destinations;
+    private final List<Coordinate> waypoints;
+
+    public PathQuery(List<Coordinate> origins, List<Coordinate> destinations, List<Coordinate> waypoints) {
+        this.origins = Collections.unmodifiableList(new ArrayList<>(origins));
+        this.destinations = Collections.unmodifiableList(new ArrayList<>(destinations));
+        this.waypoints = Collections.unmodifiableList(new ArrayList<>(waypoints));
+    }
+
+    /**
+     * Parse a query line: the origins, then the destinations and, optionally, the waypoints,
+     * separated by semicolons, each as row and column pairs separated by spaces, e.g.
+     * {@code 0 0 ; 5 5 ; 2 3}.
+     *
+     * @param line the query line
+     * @return the query
+     * @throws IllegalArgumentException if the line is not a query
+     */
+    public static PathQuery parse(String line) {
+        String[] parts = line.split(";");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("A query should be origins ; destinations [; waypoints].");
+        }
+        List<Coordinate> waypoints = parts.length == 3 ? parseCoordinates(parts[2], true) : new ArrayList<>();
+        return new PathQuery(parseCoordinates(parts[0], false), parseCoordinates(parts[1], false), waypoints);
+    }
+
+    /**
+     * Parse the coordinate pairs of one part of a query line.
+     */
+    private static List<Coordinate> parseCoordinates(String part, boolean canBeEmpty) {
+        String trimmed = part.trim();
+        String[] tokens = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+        if (tokens.length % 2 != 0 || (tokens.length == 0 && !canBeEmpty)) {
+            throw new IllegalArgumentException("Query coordinates should be in pairs.");
+        }
+        List<Coordinate> coords = new ArrayList<>();
+        try {
+            for (int i = 0; i < tokens.length; i += 2) {
+                coords.add(new Coordinate(Integer.parseInt(tokens[i]), Integer.parseInt(tokens[i + 1])));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Query coordinates should be numbers: " + e.getMessage());
+        }
+        return coords;
+    }
+
+    public List<Coordinate> getOrigins() {
+        return origins;
+    }
+
+    public List<Coordinate> getDestinations() {
+        return destinations;
+    }
+
+    public List<Coordinate> getWaypoints() {
+        return waypoints;
+    }
+
+} // end of class PathQuery
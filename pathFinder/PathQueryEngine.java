@@ -0,0 +1,328 @@
+package pathFinder;
+
+import map.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Answers {@link PathQuery}s against one loaded {@link PathMap} from any number of threads at
+ * the same time. The map and its {@link CellGraph} are shared and only read by the searches;
+ * all the state of a search lives in a finder that serves one query at a time. Idle finders
+ * are kept in a lock-free pool and handed to the next query, so no lock is taken and there
+ * are never more finders than queries running at once.
+ * <p>
+ * The map must not be changed while queries run. Between queries it can be changed through
+ * {@link PathMap#setImpassable(int, int, boolean)} and {@link PathMap#setTerrainCost(int, int, int)}:
+ * the engine registers its graph to follow the changes, and finders whose frontier was sized
+ * for a largest terrain cost that a change exceeded are retired and replaced by new ones.
+ * {@link #close()} stops following the changes.
+ */
+public class PathQueryEngine implements AutoCloseable {
+
+    /**
+     * Creates the finders of an engine, all searching the same map over the same graph.
+     */
+    public interface FinderFactory {
+        /**
+         * @param map   the shared map
+         * @param graph the shared graph of the map
+         * @return a new finder that keeps its search state to itself
+         */
+        public abstract GridDijkstraPathFinder create(PathMap map, CellGraph graph);
+    } // end of interface FinderFactory
+
+    /**
+     * Receives the results of a batch of queries, in the order of the queries.
+     */
+    public interface BatchListener {
+        /**
+         * @param index  position of the query in the batch, from 0
+         * @param query  the query
+         * @param result its result
+         */
+        public abstract void onResult(int index, PathQuery query, PathResult result);
+
+        /**
+         * @param index position of the query in the batch, from 0
+         * @param query the query
+         * @param error why it could not be answered, e.g. a coordinate outside the map
+         */
+        public abstract void onError(int index, PathQuery query, RuntimeException error);
+    } // end of interface BatchListener
+
+    private final PathMap map;
+    private final CellGraph graph;
+    private final FinderFactory factory;
+    // Finders not serving a query at the moment
+    private final ConcurrentLinkedQueue<GridDijkstraPathFinder> idleFinders = new ConcurrentLinkedQueue<>();
+    // Largest terrain cost the frontiers of the finders are created for
+    private int maxCost;
+    // Number of times the finders were retired, for finders still busy to see it
+    private volatile int finderGeneration = 0;
+    // Results of earlier queries, null to search every query
+    private volatile PathResultCache cache;
+    // Registered with the map to retire the finders
+    private final MapChangeListener changeListener = this::cellChanged;
+
+    /**
+     * Answer queries with A* over a {@link GridGraph} of the map, which stores no edges.
+     *
+     * @param map the map to search
+     */
+    public PathQueryEngine(PathMap map) {
+        this(map, new GridGraph(map), AStarPathFinder::new);
+    } // end of PathQueryEngine()
+
+    /**
+     * @param map     the map to search
+     * @param graph   the graph of the map, shared by all finders
+     * @param factory creates a finder for every query running at the same time
+     */
+    public PathQueryEngine(PathMap map, CellGraph graph, FinderFactory factory) {
+        this.map = map;
+        this.graph = graph;
+        this.factory = factory;
+        maxCost = map.maxTerrainCost();
+        if (graph instanceof MapChangeListener) {
+            map.addChangeListener((MapChangeListener) graph);
+        }
+        map.addChangeListener(changeListener);
+    } // end of PathQueryEngine()
+
+    /**
+     * Stop following the changes of the map: the engine and its graph are no longer told
+     * about them, so the map can outlive the engine. Queries must not be answered afterwards.
+     */
+    @Override
+    public void close() {
+        map.removeChangeListener(changeListener);
+        if (graph instanceof MapChangeListener) {
+            map.removeChangeListener((MapChangeListener) graph);
+        }
+        idleFinders.clear();
+    } // end of close()
+
+    /**
+     * Retire the finders once a changed cell costs more than any cell did when they were
+     * created, as their frontiers may not hold such a cost.
+     */
+    private void cellChanged(int r, int c, long version) {
+        if (!map.isPassable(r, c)) {
+            return;
+        }
+        int cost = map.terrainCost(r, c);
+        if (cost > maxCost) {
+            maxCost = cost;
+            finderGeneration++;
+            idleFinders.clear();
+        }
+    }
+
+    /**
+     * Find the shortest path of a query. Safe to call from several threads at once.
+     *
+     * @param query the origins, destinations and waypoints of the path
+     * @return the path and its cost, with no path if there is none
+     * @throws IllegalArgumentException if a coordinate of the query is not in the map
+     */
+    public PathResult findPath(PathQuery query) {
+        PathResultCache results = cache;
+        return results != null ? results.findPath(query, this::search) : search(query);
+    } // end of findPath()
+
+    /**
+     * Answer a query with an idle finder, or a new one if all are busy.
+     */
+    private PathResult search(PathQuery query) {
+        return withFinder(finder -> finder.findPath(query));
+    }
+
+    /**
+     * Run a task with an idle finder, or a new one if all are busy, and put the finder back.
+     */
+    private <T> T withFinder(Function<GridDijkstraPathFinder, T> task) {
+        int generation = finderGeneration;
+        GridDijkstraPathFinder finder = idleFinders.poll();
+        if (finder == null) {
+            finder = factory.create(map, graph);
+        }
+        try {
+            return task.apply(finder);
+        } finally {
+            if (generation == finderGeneration) {
+                idleFinders.offer(finder);
+            }
+        }
+    }
+
+    /**
+     * Find the cost from every origin to every destination on a pool of threads, with one
+     * search per origin that stops as soon as all destinations are settled. The path behind
+     * any of the costs can then be found on demand with {@link #findPath(PathQuery)}.
+     *
+     * @param origins      the origins, one row each
+     * @param destinations the destinations, one column each
+     * @param pool         the threads to search on
+     * @return the cost from origin i to destination j at [i][j], {@link PathResult#NO_PATH}
+     * if it cannot be reached
+     * @throws IllegalArgumentException if a coordinate is not in the map
+     * @throws InterruptedException     if the calling thread is interrupted while waiting; the
+     *                                  searches still running are cancelled
+     */
+    public int[][] distanceMatrix(List<Coordinate> origins, List<Coordinate> destinations, ExecutorService pool)
+            throws InterruptedException {
+        checkInMap(origins);
+        checkInMap(destinations);
+        List<Future<int[]>> rows = new ArrayList<>(origins.size());
+        try {
+            for (Coordinate origin : origins) {
+                rows.add(pool.submit(() -> withFinder(finder -> finder.costsFrom(origin, destinations))));
+            }
+            int[][] costs = new int[origins.size()][];
+            for (int i = 0; i < costs.length; i++) {
+                try {
+                    costs[i] = rows.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException("Origin " + i + " failed.", e.getCause());
+                }
+            }
+            return costs;
+        } finally {
+            for (Future<int[]> row : rows) {
+                row.cancel(true);
+            }
+        }
+    } // end of distanceMatrix()
+
+    /**
+     * Find the cost from every origin to every destination on a pool of the given number of
+     * threads.
+     *
+     * @param origins      the origins, one row each
+     * @param destinations the destinations, one column each
+     * @param threads      number of threads of the pool
+     * @return the cost from origin i to destination j at [i][j], {@link PathResult#NO_PATH}
+     * if it cannot be reached
+     * @throws IllegalArgumentException if a coordinate is not in the map
+     * @throws InterruptedException     if the calling thread is interrupted while waiting
+     */
+    public int[][] distanceMatrix(List<Coordinate> origins, List<Coordinate> destinations, int threads)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            return distanceMatrix(origins, destinations, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    } // end of distanceMatrix()
+
+    private void checkInMap(List<Coordinate> coords) {
+        for (Coordinate coord : coords) {
+            if (!map.isIn(coord)) {
+                throw new IllegalArgumentException("Coordinate " + coord.getRow() + " " + coord.getColumn() + " is not in the map.");
+            }
+        }
+    }
+
+    /**
+     * Answer repeated queries from a cache of earlier results.
+     *
+     * @param cache the cache, for the map of this engine, or null to search every query
+     */
+    public void setCache(PathResultCache cache) {
+        this.cache = cache;
+    }
+
+    public PathResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Answer a stream of queries on a pool of threads and pass the results to the listener in
+     * the order of the queries, on the calling thread. At most maxInFlight queries are read
+     * ahead of the oldest unanswered one, so a long stream is never held in memory at once.
+     *
+     * @param queries     the queries, read on the calling thread
+     * @param pool        the threads to answer them on
+     * @param maxInFlight largest number of queries submitted and not yet passed to the listener
+     * @param listener    receives every result or error
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a
+     *                              result; the queries still running are cancelled
+     */
+    public void findPaths(Iterator<PathQuery> queries, ExecutorService pool, int maxInFlight,
+                          BatchListener listener) throws InterruptedException {
+        ArrayDeque<PathQuery> submitted = new ArrayDeque<>();
+        ArrayDeque<Future<PathResult>> results = new ArrayDeque<>();
+        int index = 0;
+        try {
+            while (queries.hasNext() || !results.isEmpty()) {
+                while (queries.hasNext() && results.size() < Math.max(1, maxInFlight)) {
+                    PathQuery query = queries.next();
+                    submitted.add(query);
+                    results.add(pool.submit(() -> findPath(query)));
+                }
+                PathQuery query = submitted.poll();
+                try {
+                    listener.onResult(index, query, results.poll().get());
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof RuntimeException)) {
+                        throw new IllegalStateException("Query " + index + " failed.", e.getCause());
+                    }
+                    listener.onError(index, query, (RuntimeException) e.getCause());
+                }
+                index++;
+            }
+        } finally {
+            for (Future<PathResult> result : results) {
+                result.cancel(true);
+            }
+        }
+    } // end of findPaths()
+
+    /**
+     * Answer a list of queries on a pool of the given number of threads.
+     *
+     * @param queries the queries
+     * @param threads number of threads of the pool
+     * @return the results, in the order of the queries
+     * @throws IllegalArgumentException if a coordinate of a query is not in the map
+     * @throws InterruptedException     if the calling thread is interrupted while waiting
+     */
+    public List<PathResult> findPaths(List<PathQuery> queries, int threads) throws InterruptedException {
+        List<PathResult> results = new ArrayList<>(queries.size());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            findPaths(queries.iterator(), pool, threads * 2, new BatchListener() {
+                @Override
+                public void onResult(int index, PathQuery query, PathResult result) {
+                    results.add(result);
+                }
+
+                @Override
+                public void onError(int index, PathQuery query, RuntimeException error) {
+                    throw error;
+                }
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    } // end of findPaths()
+
+    public PathMap getMap() {
+        return map;
+    }
+
+    public CellGraph getGraph() {
+        return graph;
+    }
+
+} // end of class PathQueryEngine
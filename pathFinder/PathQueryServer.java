@@ -0,0 +1,273 @@
+package pathFinder;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers path queries sent over TCP to the loopback address, against the map of one
+ * {@link PathQueryEngine}, so that the map is loaded once for any number of requests.
+ * <p>
+ * The protocol is one line per request and one line per response, in UTF-8:
+ * <ul>
+ * <li>a query line as read by {@link PathQuery#parse(String)} gets {@link PathResult#toLine()},
+ * or "Error: " and the reason;</li>
+ * <li>{@code STATS} gets the counters of {@link #stats()}, with those of the cache of the
+ * engine if it has one;</li>
+ * <li>{@code QUIT} closes the connection; blank lines are ignored.</li>
+ * </ul>
+ * Every connection is served on its own virtual thread when the JVM has them, or on a pooled
+ * platform thread otherwise. At most a fixed number of searches run at once; the other
+ * requests wait for one to finish, and their number is the queue depth.
+ */
+public class PathQueryServer implements Closeable {
+
+    // Number of latency histogram buckets, bucket i counting latencies below 2^i microseconds
+    private static final int LATENCY_BUCKETS = 40;
+    // Pause after a failed accept, doubled on every failure in a row up to the longest one
+    private static final long ACCEPT_RETRY_MIN_MILLIS = 10;
+    private static final long ACCEPT_RETRY_MAX_MILLIS = 1000;
+
+    private final PathQueryEngine engine;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    // Open client connections, closed with the server
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    // Permits of the searches allowed to run at once
+    private final Semaphore searches;
+    private final int maxSearches;
+    private volatile boolean closed = false;
+    private Thread acceptor;
+    // Query counters and latencies, from a query line read to its response written
+    private final LongAdder requestCounter = new LongAdder();
+    private final LongAdder latencyTotalNanos = new LongAdder();
+    private final AtomicLong latencyMaxNanos = new AtomicLong();
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+
+    /**
+     * Bind the server to the loopback address. Call {@link #start()} to accept connections.
+     *
+     * @param engine      answers the queries
+     * @param port        the port to listen on, 0 for any free port
+     * @param maxSearches largest number of searches running at once
+     * @throws IOException if the port cannot be bound
+     */
+    public PathQueryServer(PathQueryEngine engine, int port, int maxSearches) throws IOException {
+        this.engine = engine;
+        this.maxSearches = maxSearches;
+        searches = new Semaphore(maxSearches, true);
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        connections = newConnectionExecutor();
+    } // end of PathQueryServer()
+
+    /**
+     * Create an executor that starts a virtual thread per task, if the JVM has virtual threads,
+     * or else a pool of platform threads that grows with the number of connections.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept connections on a background thread until {@link #close()} is called.
+     */
+    public void start() {
+        acceptor = new Thread(this::acceptConnections, "path-query-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Wait until the server is closed.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Accept connections until the server or its socket is closed. A failed accept, e.g. with
+     * no file descriptors left, is retried after a pause that grows while the failures last.
+     */
+    private void acceptConnections() {
+        long retryMillis = ACCEPT_RETRY_MIN_MILLIS;
+        while (!closed && !serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                clients.add(socket);
+                connections.execute(() -> serve(socket));
+                retryMillis = ACCEPT_RETRY_MIN_MILLIS;
+            } catch (IOException e) {
+                if (closed || serverSocket.isClosed()) {
+                    return;
+                }
+                System.err.println("Cannot accept connection, retrying in " + retryMillis + " ms: " + e);
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                retryMillis = Math.min(ACCEPT_RETRY_MAX_MILLIS, retryMillis * 2);
+            }
+        }
+    } // end of acceptConnections()
+
+    /**
+     * Answer the requests of one connection until the client quits or disconnects.
+     */
+    private void serve(Socket socket) {
+        try (Socket client = socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long start = System.nanoTime();
+                String request = line.trim();
+                if (request.isEmpty()) {
+                    continue;
+                }
+                if (request.equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                if (request.equalsIgnoreCase("STATS")) {
+                    writer.println(stats());
+                    writer.flush();
+                    continue;
+                }
+                writer.println(answer(request));
+                writer.flush();
+                recordLatency(System.nanoTime() - start);
+            }
+        } catch (SocketException e) {
+            // the client went away, or the server was closed
+        } catch (IOException e) {
+            System.err.println("Connection error: " + e);
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    /**
+     * Answer one query line once a search may run. Any failure of the query is answered with
+     * an error line, so it never ends the connection.
+     */
+    private String answer(String request) {
+        try {
+            PathQuery query = PathQuery.parse(request);
+            searches.acquire();
+            try {
+                return engine.findPath(query).toLine();
+            } finally {
+                searches.release();
+            }
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        } catch (RuntimeException e) {
+            return "Error: " + e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error: interrupted";
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        requestCounter.increment();
+        latencyTotalNanos.add(nanos);
+        latencyMaxNanos.accumulateAndGet(nanos, Math::max);
+        long micros = nanos / 1000;
+        int bucket = Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        latencyHistogram.incrementAndGet(bucket);
+    }
+
+    /**
+     * @return the number of requests waiting for a search to finish
+     */
+    public int queueDepth() {
+        return searches.getQueueLength();
+    }
+
+    /**
+     * @return the number of searches running
+     */
+    public int activeSearches() {
+        return maxSearches - searches.availablePermits();
+    }
+
+    /**
+     * @return the number of queries answered
+     */
+    public long requests() {
+        return requestCounter.sum();
+    }
+
+    /**
+     * Upper bound of the latency that a share of the queries did not exceed, from the
+     * power-of-two histogram.
+     *
+     * @param share e.g. 0.99 for the 99th percentile
+     * @return the latency in microseconds, 0 before the first request
+     */
+    public long latencyPercentileMicros(double share) {
+        long total = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            total += latencyHistogram.get(i);
+        }
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += latencyHistogram.get(i);
+            if (total > 0 && seen >= share * total) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the counters of the server as one line of name=value pairs, latencies in microseconds
+     */
+    public String stats() {
+        long count = requests();
+        long mean = count == 0 ? 0 : latencyTotalNanos.sum() / count / 1000;
+        return "requests=" + count + " queue=" + queueDepth() + " active=" + activeSearches()
+                + " latencyMean=" + mean + " latencyP50<=" + latencyPercentileMicros(0.5)
+                + " latencyP99<=" + latencyPercentileMicros(0.99) + " latencyMax=" + latencyMaxNanos.get() / 1000
+                + (engine.getCache() != null ? " " + engine.getCache().stats() : "");
+    }
+
+    /**
+     * Stop accepting connections and close the open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+        connections.shutdownNow();
+    }
+
+} // end of class PathQueryServer
@@ -0,0 +1,104 @@
+package pathFinder;
+
+import map.Coordinate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The answer to a {@link PathQuery}: the shortest path found, its cost and the number of
+ * coordinates the search explored for it. When the waypoint order was picked by a heuristic,
+ * the result also carries a lower bound on the optimal cost.
+ */
+public class PathResult {
+
+    /**
+     * Cost of a query without a path.
+     */
+    public static final int NO_PATH = Integer.MAX_VALUE;
+
+    private final List<Coordinate> path;
+    private final int cost;
+    private final int coordinatesExplored;
+    private final int lowerBound;
+
+    /**
+     * A result whose cost is optimal.
+     *
+     * @param path                the path, empty if there is none
+     * @param cost                its cost, {@link #NO_PATH} if there is none
+     * @param coordinatesExplored number of coordinates explored to answer the query
+     */
+    public PathResult(List<Coordinate> path, int cost, int coordinatesExplored) {
+        this(path, cost, coordinatesExplored, cost);
+    }
+
+    /**
+     * @param path                the path, empty if there is none
+     * @param cost                its cost, {@link #NO_PATH} if there is none
+     * @param coordinatesExplored number of coordinates explored to answer the query
+     * @param lowerBound          a lower bound on the optimal cost, at most the cost
+     */
+    public PathResult(List<Coordinate> path, int cost, int coordinatesExplored, int lowerBound) {
+        this.path = Collections.unmodifiableList(path);
+        this.cost = cost;
+        this.coordinatesExplored = coordinatesExplored;
+        this.lowerBound = lowerBound;
+    }
+
+    /**
+     * @return true if a path was found
+     */
+    public boolean isFound() {
+        return cost != NO_PATH;
+    }
+
+    /**
+     * @return the result as one line: the cost followed by the coordinates of the path, e.g.
+     * {@code 2 (0,0) (0,1) (0,2)}, or "No path found."
+     */
+    public String toLine() {
+        if (!isFound()) {
+            return "No path found.";
+        }
+        StringBuilder line = new StringBuilder().append(cost);
+        for (Coordinate coord : path) {
+            line.append(" (").append(coord.getRow()).append(',').append(coord.getColumn()).append(')');
+        }
+        return line.toString();
+    }
+
+    public List<Coordinate> getPath() {
+        return path;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public int getCoordinatesExplored() {
+        return coordinatesExplored;
+    }
+
+    /**
+     * @return a lower bound on the optimal cost, the cost itself if it is known to be optimal
+     */
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * @return true if the cost is known to be optimal
+     */
+    public boolean isOptimal() {
+        return cost == lowerBound;
+    }
+
+    /**
+     * @return the relative gap of the cost to {@link #getLowerBound()}, e.g. 0.05 for 5%
+     */
+    public double gap() {
+        return WaypointTour.gap(cost, lowerBound);
+    }
+
+} // end of class PathResult
@@ -0,0 +1,200 @@
+package pathFinder;
+
+import map.Coordinate;
+import map.PathMap;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of {@link PathResult}s, evicting the least recently used one when full.
+ * <p>
+ * A query is keyed by its sets of origins, destinations and waypoints, each sorted and without
+ * repeats, since neither their order nor repeats change the shortest path, and by the
+ * {@link PathMap#version()} it was answered for. A result cached for an earlier version is
+ * never returned, so a change of the impassable cells or terrain costs cannot serve a stale
+ * path. Safe to use from several threads.
+ */
+public class PathResultCache {
+
+    /**
+     * The normalized cell ids of a query and the map version it was answered for.
+     */
+    private static final class Key {
+        private final int[] origins;
+        private final int[] destinations;
+        private final int[] waypoints;
+        private final long version;
+        private final int hash;
+
+        Key(PathQuery query, PathMap map, long version) {
+            origins = normalize(query.getOrigins(), map);
+            destinations = normalize(query.getDestinations(), map);
+            waypoints = normalize(query.getWaypoints(), map);
+            this.version = version;
+            hash = 31 * (31 * (31 * Arrays.hashCode(origins) + Arrays.hashCode(destinations))
+                    + Arrays.hashCode(waypoints)) + Long.hashCode(version);
+        }
+
+        /**
+         * Sorted cell ids of the coordinates, without repeats. Coordinates outside the map are
+         * rejected, as their ids would be those of cells inside it.
+         */
+        private static int[] normalize(List<Coordinate> coords, PathMap map) {
+            int[] cells = new int[coords.size()];
+            for (int i = 0; i < cells.length; i++) {
+                Coordinate coord = coords.get(i);
+                if (!map.isIn(coord)) {
+                    throw new IllegalArgumentException("Coordinate " + coord.getRow() + " " + coord.getColumn() + " is not in the map.");
+                }
+                cells[i] = coord.getRow() * map.sizeC + coord.getColumn();
+            }
+            Arrays.sort(cells);
+            int unique = 0;
+            for (int i = 0; i < cells.length; i++) {
+                if (i == 0 || cells[i] != cells[i - 1]) {
+                    cells[unique++] = cells[i];
+                }
+            }
+            return Arrays.copyOf(cells, unique);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return version == key.version && Arrays.equals(origins, key.origins)
+                    && Arrays.equals(destinations, key.destinations) && Arrays.equals(waypoints, key.waypoints);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    } // end of class Key
+
+    private final PathMap map;
+    private final int capacity;
+    // Results in access order, least recently used first
+    private final LinkedHashMap<Key, PathResult> results;
+    // Version of the map the cached results are for
+    private long version;
+    private long hitCounter = 0;
+    private long missCounter = 0;
+    private long evictionCounter = 0;
+
+    /**
+     * @param map      the map the cached results are for
+     * @param capacity largest number of results kept
+     */
+    public PathResultCache(PathMap map, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The cache capacity should be 1 or more.");
+        }
+        this.map = map;
+        this.capacity = capacity;
+        version = map.version();
+        results = new LinkedHashMap<Key, PathResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PathResult> eldest) {
+                if (size() > PathResultCache.this.capacity) {
+                    evictionCounter++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached result of a query, or answer it with the finder and cache it.
+     * A result is only cached if the map did not change while it was found.
+     *
+     * @param query  the query
+     * @param finder answers the query on a miss
+     * @return the result
+     * @throws IllegalArgumentException if a coordinate of the query is not in the map
+     */
+    public PathResult findPath(PathQuery query, Function<PathQuery, PathResult> finder) {
+        Key key = new Key(query, map, map.version());
+        PathResult result = get(key);
+        if (result != null) {
+            return result;
+        }
+        result = finder.apply(query);
+        if (map.version() == key.version) {
+            put(key, result);
+        }
+        return result;
+    }
+
+    private synchronized PathResult get(Key key) {
+        dropStale(key.version);
+        PathResult result = results.get(key);
+        if (result != null) {
+            hitCounter++;
+        } else {
+            missCounter++;
+        }
+        return result;
+    }
+
+    private synchronized void put(Key key, PathResult result) {
+        dropStale(key.version);
+        if (key.version == version) {
+            results.put(key, result);
+        }
+    }
+
+    /**
+     * Forget all results once a newer map version is seen, as none of them can be returned again.
+     */
+    private void dropStale(long currentVersion) {
+        if (currentVersion > version) {
+            results.clear();
+            version = currentVersion;
+        }
+    }
+
+    /**
+     * @return the number of queries answered from the cache
+     */
+    public synchronized long hits() {
+        return hitCounter;
+    }
+
+    /**
+     * @return the number of queries that had to be searched
+     */
+    public synchronized long misses() {
+        return missCounter;
+    }
+
+    /**
+     * @return the number of results dropped to make room for newer ones
+     */
+    public synchronized long evictions() {
+        return evictionCounter;
+    }
+
+    /**
+     * @return the counters of the cache as name=value pairs
+     */
+    public synchronized String stats() {
+        return "cacheHits=" + hitCounter + " cacheMisses=" + missCounter + " cacheEvictions=" + evictionCounter
+                + " cacheSize=" + results.size();
+    }
+
+    /**
+     * @return the number of results cached
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+} // end of class PathResultCache
@@ -0,0 +1,278 @@
+package pathFinder;
+
+import map.Coordinate;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Buffered sink of paths, written cell by cell as a finder traces them, so that a long path
+ * is neither built as a list nor formatted a string at a time. Paths are written one after
+ * the other in one of three formats:
+ * <ul>
+ * <li>{@link Format#TEXT}: a line of the cells, {@code (r,c) (r,c) ...};</li>
+ * <li>{@link Format#RUNS}: a line of the first cell and the runs of steps in one direction,
+ * {@code (r,c) D12 R3 U1 ...}, with D, U, L and R for down, up, left and right;</li>
+ * <li>{@link Format#BINARY}: the number of cells as a little-endian int, then the row and
+ * column of the first cell as ints, then every step in two bits, four to a byte from the
+ * low bits up: 0 down, 1 up, 2 left, 3 right.</li>
+ * </ul>
+ * A path that was not found is written with no cells: an empty line, or a count of 0.
+ * The runs and binary formats need every cell of a path to be next to the previous one. The
+ * binary format keeps the steps of a path, a quarter of a byte per cell, until the path ends,
+ * to write its number of cells first.
+ */
+public class PathWriter implements Closeable, Flushable {
+
+    /**
+     * Format of the written paths.
+     */
+    public enum Format {
+        TEXT, RUNS, BINARY;
+
+        /**
+         * @param name the name of a format, in any case
+         * @return the format
+         * @throws IllegalArgumentException if there is no format of that name
+         */
+        public static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown path format " + name + ", expected text, runs or binary.");
+            }
+        }
+    } // end of enum Format
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    // Room for the longest item written at once: a run or a cell with two ints
+    private static final int ITEM_BYTES = 32;
+    // Letters of the directions, in the neighbour order of the graphs
+    private static final byte[] DIRECTION_LETTERS = {'D', 'U', 'L', 'R'};
+
+    private final OutputStream out;
+    private final Format format;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position;
+
+    // Whether a path has been begun and not ended yet
+    private boolean open;
+    // Number of cells of the current path
+    private int cellNum;
+    // Previous cell of the current path
+    private int lastRow;
+    private int lastCol;
+    // Direction and length of the current run, for the runs format
+    private int runDirection;
+    private int runLength;
+    // First cell and steps of the current path, for the binary format
+    private int firstRow;
+    private int firstCol;
+    private byte[] steps = new byte[256];
+
+    /**
+     * @param out    the stream to write to, closed with the writer
+     * @param format the format of the paths
+     */
+    public PathWriter(OutputStream out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Start a path.
+     *
+     * @throws IllegalStateException if the previous path was not ended
+     */
+    public void begin() {
+        if (open) {
+            throw new IllegalStateException("The previous path was not ended.");
+        }
+        open = true;
+        cellNum = 0;
+        runLength = 0;
+    }
+
+    /**
+     * Append the next cell of the path.
+     *
+     * @param r row index
+     * @param c col index
+     * @throws IOException              if the stream cannot be written
+     * @throws IllegalArgumentException if the runs or binary format is written and the cell is
+     *                                  not next to the previous one
+     */
+    public void add(int r, int c) throws IOException {
+        if (!open) {
+            throw new IllegalStateException("No path was begun.");
+        }
+        if (cellNum == 0) {
+            if (format == Format.BINARY) {
+                firstRow = r;
+                firstCol = c;
+            } else {
+                putCell(r, c);
+            }
+        } else if (format == Format.TEXT) {
+            putByte((byte) ' ');
+            putCell(r, c);
+        } else {
+            int direction = direction(r - lastRow, c - lastCol);
+            if (format == Format.RUNS) {
+                if (runLength > 0 && direction != runDirection) {
+                    putRun();
+                }
+                runDirection = direction;
+                runLength++;
+            } else {
+                int step = cellNum - 1;
+                if (step / 4 == steps.length) {
+                    steps = Arrays.copyOf(steps, steps.length * 2);
+                }
+                steps[step / 4] |= (byte) (direction << (step % 4 * 2));
+            }
+        }
+        lastRow = r;
+        lastCol = c;
+        cellNum++;
+    } // end of add()
+
+    /**
+     * Finish the path.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    public void end() throws IOException {
+        if (!open) {
+            throw new IllegalStateException("No path was begun.");
+        }
+        open = false;
+        if (format == Format.BINARY) {
+            putIntLE(cellNum);
+            if (cellNum > 0) {
+                putIntLE(firstRow);
+                putIntLE(firstCol);
+                int stepBytes = (cellNum + 2) / 4;
+                for (int i = 0; i < stepBytes; i++) {
+                    ensure(1);
+                    buffer[position++] = steps[i];
+                }
+                Arrays.fill(steps, 0, stepBytes, (byte) 0);
+            }
+            return;
+        }
+        if (runLength > 0) {
+            putRun();
+        }
+        putByte((byte) '\n');
+    } // end of end()
+
+    /**
+     * Write a whole path.
+     *
+     * @param path the cells of the path, empty if none was found
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(List<Coordinate> path) throws IOException {
+        begin();
+        for (Coordinate coord : path) {
+            add(coord.getRow(), coord.getColumn());
+        }
+        end();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Direction of a step to a neighbouring cell.
+     */
+    private static int direction(int rowStep, int colStep) {
+        if (colStep == 0 && (rowStep == 1 || rowStep == -1)) {
+            return rowStep == 1 ? 0 : 1;
+        }
+        if (rowStep == 0 && (colStep == 1 || colStep == -1)) {
+            return colStep == 1 ? 3 : 2;
+        }
+        throw new IllegalArgumentException("A step of " + rowStep + " rows and " + colStep
+                + " columns does not lead to a neighbouring cell.");
+    }
+
+    private void putRun() throws IOException {
+        putByte((byte) ' ');
+        putByte(DIRECTION_LETTERS[runDirection]);
+        putInt(runLength);
+        runLength = 0;
+    }
+
+    private void putCell(int r, int c) throws IOException {
+        ensure(ITEM_BYTES);
+        buffer[position++] = '(';
+        putInt(r);
+        buffer[position++] = ',';
+        putInt(c);
+        buffer[position++] = ')';
+    }
+
+    /**
+     * Write an int in decimal digits, without building a string.
+     */
+    private void putInt(int value) throws IOException {
+        ensure(ITEM_BYTES / 2);
+        long rest = value;
+        if (rest < 0) {
+            buffer[position++] = '-';
+            rest = -rest;
+        }
+        int digits = 1;
+        for (long bound = 10; bound <= rest; bound *= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        position += digits;
+    }
+
+    private void putIntLE(int value) throws IOException {
+        ensure(4);
+        for (int i = 0; i < 4; i++) {
+            buffer[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void putByte(byte value) throws IOException {
+        ensure(1);
+        buffer[position++] = value;
+    }
+
+    /**
+     * Write the buffer out if it has less room left than needed.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (BUFFER_BYTES - position < bytes) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+} // end of class PathWriter
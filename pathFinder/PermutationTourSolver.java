@@ -0,0 +1,60 @@
+package pathFinder;
+
+/**
+ * Finds the cheapest {@link WaypointTour} by trying every origin with every visiting order of
+ * the waypoints, generated with Heap's algorithm. Each order is scored from the
+ * {@link WaypointTable}, so the O(n!) orders cost no searches.
+ */
+public class PermutationTourSolver implements TourSolver {
+
+    private WaypointTable table;
+    private int bestCost;
+    private int bestOrigin;
+    private int[] bestOrder;
+
+    @Override
+    public WaypointTour solve(WaypointTable table) {
+        this.table = table;
+        bestCost = WaypointTable.INFINITY;
+        bestOrder = null;
+        int[] order = new int[table.getWaypoints().size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        findPathForEachPermutation(order, order.length);
+        if (bestOrder == null) {
+            return null;
+        }
+        int last = bestOrder[bestOrder.length - 1];
+        return new WaypointTour(bestOrigin, bestOrder, table.nearestDestination(last), bestCost);
+    }
+
+    /**
+     * Use the Heap's algorithm to generate all visiting orders of the waypoints
+     * and score each of them with every origin.
+     *
+     * @param order the waypoint indices, permuted in place
+     * @param n     the size of the prefix to generate permutations for
+     */
+    private void findPathForEachPermutation(int[] order, int n) {
+        if (n == 1) {
+            for (int origin = 0; origin < table.getOrigins().size(); origin++) {
+                int cost = table.tourCost(origin, order);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestOrigin = origin;
+                    bestOrder = order.clone();
+                }
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                findPathForEachPermutation(order, n - 1);
+                int j = n % 2 == 1 ? 0 : i;
+                int tmp = order[j];
+                order[j] = order[n - 1];
+                order[n - 1] = tmp;
+            }
+        }
+    }
+
+} // end of class PermutationTourSolver
@@ -0,0 +1,61 @@
+package pathFinder;
+
+/**
+ * The frontier implementations the grid search engines can run with.
+ */
+public enum QueueStrategy {
+    /**
+     * {@link LazyCellHeap}: binary heap that queues a cell again on every improvement.
+     */
+    LAZY_HEAP {
+        @Override
+        public CellQueue create(int cellCount, int maxEdgeCost) {
+            return new LazyCellHeap();
+        }
+    },
+    /**
+     * {@link IndexedCellHeap}: 4-ary heap with decrease-key, one entry per cell.
+     */
+    INDEXED_HEAP {
+        @Override
+        public CellQueue create(int cellCount, int maxEdgeCost) {
+            return new IndexedCellHeap(cellCount, 4);
+        }
+    },
+    /**
+     * {@link BucketCellQueue}: Dial's buckets, one per distance value within the
+     * maximum edge cost of the last settled distance.
+     */
+    BUCKET {
+        @Override
+        public CellQueue create(int cellCount, int maxEdgeCost) {
+            return new BucketCellQueue(cellCount, maxEdgeCost);
+        }
+    };
+
+    /**
+     * Default largest terrain cost for which {@link #select(int, int)} picks buckets.
+     */
+    public static final int DEFAULT_BUCKET_BOUND = 256;
+
+    /**
+     * Pick the frontier for a map: buckets when the edge costs are small enough that
+     * skipping empty buckets is cheap, the comparison heap otherwise.
+     *
+     * @param maxEdgeCost the largest edge cost of the map
+     * @param bucketBound buckets are used when maxEdgeCost is below this bound
+     * @return {@link #BUCKET} or {@link #LAZY_HEAP}
+     */
+    public static QueueStrategy select(int maxEdgeCost, int bucketBound) {
+        return maxEdgeCost < bucketBound ? BUCKET : LAZY_HEAP;
+    }
+
+    /**
+     * Create an empty queue for a map.
+     *
+     * @param cellCount   number of cell ids of the map
+     * @param maxEdgeCost the largest edge cost of the map
+     * @return the queue
+     */
+    public abstract CellQueue create(int cellCount, int maxEdgeCost);
+} // end of enum QueueStrategy
@@ -0,0 +1,103 @@
+package pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Distances, parents and settled flags of one search over the cells of a map, reusable across
+ * searches. Every entry is stamped with the generation of the search that wrote it, and
+ * {@link #reset()} starts a new generation, so that entries of earlier searches read as
+ * unreached without clearing the arrays. A search then costs only the cells it explores.
+ */
+public class SearchContext {
+
+    // Distance of a cell that was not reached by the current search
+    public static final int INFINITY = Integer.MAX_VALUE;
+    // Parent of a cell that has none
+    public static final int NO_CELL = -1;
+
+    // Distance to the sources for every cell reached
+    private int[] distances;
+    // Previous cell on the shortest path for every cell reached
+    private int[] parents;
+    // Generation of the last search that reached every cell, plus one once it was settled
+    private int[] stamps;
+    // Generation of the current search, always even and above 0, the stamp of no cell yet
+    private int generation = 0;
+
+    /**
+     * @param cellCount number of cells of the map
+     */
+    public SearchContext(int cellCount) {
+        distances = new int[cellCount];
+        parents = new int[cellCount];
+        stamps = new int[cellCount];
+        reset();
+    }
+
+    /**
+     * Forget every cell, in constant time except once every billion resets.
+     */
+    public void reset() {
+        if (generation >= Integer.MAX_VALUE - 2) {
+            Arrays.fill(stamps, 0);
+            generation = 0;
+        }
+        generation += 2;
+    }
+
+    /**
+     * @return the number of cells of the map
+     */
+    public int cellCount() {
+        return stamps.length;
+    }
+
+    /**
+     * @param cell a cell id
+     * @return the distance of the cell, {@link #INFINITY} if the current search did not reach it
+     */
+    public int distance(int cell) {
+        return stamps[cell] >= generation ? distances[cell] : INFINITY;
+    }
+
+    /**
+     * @param cell a cell id
+     * @return the parent of the cell, {@link #NO_CELL} for sources and unreached cells
+     */
+    public int parent(int cell) {
+        return stamps[cell] >= generation ? parents[cell] : NO_CELL;
+    }
+
+    /**
+     * Set the distance and parent of a cell reached by the current search.
+     *
+     * @param cell     a cell id
+     * @param distance its distance
+     * @param parent   its parent, {@link #NO_CELL} for sources
+     */
+    public void reach(int cell, int distance, int parent) {
+        distances[cell] = distance;
+        parents[cell] = parent;
+        if (stamps[cell] < generation) {
+            stamps[cell] = generation;
+        }
+    }
+
+    /**
+     * @param cell a cell id
+     * @return true if the cell was settled by the current search
+     */
+    public boolean isSettled(int cell) {
+        return stamps[cell] == generation + 1;
+    }
+
+    /**
+     * Mark a reached cell as settled, its distance is final.
+     *
+     * @param cell a cell id
+     */
+    public void settle(int cell) {
+        stamps[cell] = generation + 1;
+    }
+
+} // end of class SearchContext
@@ -0,0 +1,33 @@
+package pathFinder;
+
+/**
+ * Chooses the origin, the waypoint visiting order and the destination of a waypoint query
+ * from the costs in a {@link WaypointTable}.
+ */
+public interface TourSolver {
+    /**
+     * @param table costs between the terminals, with at least one waypoint
+     * @return the chosen tour, or null if no origin can reach a destination through all waypoints
+     */
+    public abstract WaypointTour solve(WaypointTable table);
+
+    /**
+     * Largest number of waypoints solved exactly by {@link #forWaypoints(int)}; the Held-Karp
+     * tables take about 100MB at this size.
+     */
+    public static final int EXACT_WAYPOINT_LIMIT = 20;
+
+    /**
+     * Pick the default solver for a number of waypoints: {@link HeldKarpTourSolver} up to
+     * {@link #EXACT_WAYPOINT_LIMIT}, a {@link HeuristicTourSolver} with its default budget beyond.
+     *
+     * @param waypointCount the number of waypoints of the query
+     * @return the solver
+     */
+    public static TourSolver forWaypoints(int waypointCount) {
+        if (waypointCount <= EXACT_WAYPOINT_LIMIT) {
+            return new HeldKarpTourSolver();
+        }
+        return new HeuristicTourSolver();
+    }
+} // end of interface TourSolver
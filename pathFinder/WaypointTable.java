@@ -0,0 +1,131 @@
+package pathFinder;
+
+import map.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Costs of the shortest paths between the terminals of a waypoint query: from every origin to
+ * every waypoint, between every two waypoints, and from every waypoint to every destination.
+ * It is built with one search from each origin and each waypoint that covers all the terminals
+ * it needs, after which scoring a visiting order of the waypoints is pure arithmetic.
+ */
+public class WaypointTable {
+
+    // Cost of a pair of terminals with no path between them
+    public static final int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * A search from one cell that finds the costs to several others.
+     */
+    public interface TerminalSearch {
+        /**
+         * @param source  the start of the search
+         * @param targets the cells to find the costs to
+         * @return the cost to every target in the same order, {@link #INFINITY} if unreachable
+         */
+        public abstract int[] costsFrom(Coordinate source, List<Coordinate> targets);
+    }
+
+    private List<Coordinate> origins;
+    private List<Coordinate> waypoints;
+    private List<Coordinate> destinations;
+    // [origin][waypoint]
+    private int[][] originCosts;
+    // [waypoint][waypoint]
+    private int[][] waypointCosts;
+    // [waypoint][destination]
+    private int[][] destinationCosts;
+    // Nearest destination of every waypoint, and its cost
+    private int[] nearestDestinations;
+    private int[] finishCosts;
+
+    /**
+     * Build the table with one search from every origin and every waypoint.
+     *
+     * @param origins      origin coordinates
+     * @param waypoints    waypoint coordinates
+     * @param destinations destination coordinates
+     * @param search       the search used to find the costs
+     */
+    public WaypointTable(List<Coordinate> origins, List<Coordinate> waypoints, List<Coordinate> destinations,
+                         TerminalSearch search) {
+        this.origins = origins;
+        this.waypoints = waypoints;
+        this.destinations = destinations;
+        int w = waypoints.size();
+        originCosts = new int[origins.size()][];
+        for (int i = 0; i < origins.size(); i++) {
+            originCosts[i] = search.costsFrom(origins.get(i), waypoints);
+        }
+        List<Coordinate> targets = new ArrayList<>(waypoints);
+        targets.addAll(destinations);
+        waypointCosts = new int[w][w];
+        destinationCosts = new int[w][destinations.size()];
+        nearestDestinations = new int[w];
+        finishCosts = new int[w];
+        for (int a = 0; a < w; a++) {
+            int[] costs = search.costsFrom(waypoints.get(a), targets);
+            System.arraycopy(costs, 0, waypointCosts[a], 0, w);
+            System.arraycopy(costs, w, destinationCosts[a], 0, destinations.size());
+            finishCosts[a] = INFINITY;
+            for (int d = 0; d < destinations.size(); d++) {
+                if (destinationCosts[a][d] < finishCosts[a]) {
+                    finishCosts[a] = destinationCosts[a][d];
+                    nearestDestinations[a] = d;
+                }
+            }
+        }
+    } // end of WaypointTable()
+
+    /**
+     * Add up the cost of leaving from an origin, visiting the waypoints in the given order and
+     * finishing at the nearest destination of the last one.
+     *
+     * @param origin index of the origin
+     * @param order  indices of the waypoints in visiting order
+     * @return the total cost, {@link #INFINITY} if a leg has no path
+     */
+    public int tourCost(int origin, int[] order) {
+        long total = originCosts[origin][order[0]];
+        for (int i = 1; i < order.length; i++) {
+            total += waypointCosts[order[i - 1]][order[i]];
+        }
+        total += finishCosts[order[order.length - 1]];
+        return total >= INFINITY ? INFINITY : (int) total;
+    }
+
+    public List<Coordinate> getOrigins() {
+        return origins;
+    }
+
+    public List<Coordinate> getWaypoints() {
+        return waypoints;
+    }
+
+    public List<Coordinate> getDestinations() {
+        return destinations;
+    }
+
+    public int originCost(int origin, int waypoint) {
+        return originCosts[origin][waypoint];
+    }
+
+    public int waypointCost(int from, int to) {
+        return waypointCosts[from][to];
+    }
+
+    public int destinationCost(int waypoint, int destination) {
+        return destinationCosts[waypoint][destination];
+    }
+
+    public int nearestDestination(int waypoint) {
+        return nearestDestinations[waypoint];
+    }
+
+    public int finishCost(int waypoint) {
+        return finishCosts[waypoint];
+    }
+
+} // end of class WaypointTable
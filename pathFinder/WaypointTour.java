@@ -0,0 +1,81 @@
+package pathFinder;
+
+/**
+ * A route through all waypoints: the origin it leaves from, the order it visits the waypoints
+ * in and the destination it finishes at, all as indices into the lists of a {@link WaypointTable}.
+ * It also carries a lower bound on the cost of the optimal route, equal to its own cost when the
+ * solver proved it optimal.
+ */
+public class WaypointTour {
+
+    private int origin;
+    private int[] order;
+    private int destination;
+    private int cost;
+    private int lowerBound;
+
+    /**
+     * A tour known to be optimal.
+     */
+    public WaypointTour(int origin, int[] order, int destination, int cost) {
+        this(origin, order, destination, cost, cost);
+    }
+
+    /**
+     * @param lowerBound a lower bound on the cost of the optimal tour, at most the cost
+     */
+    public WaypointTour(int origin, int[] order, int destination, int cost, int lowerBound) {
+        this.origin = origin;
+        this.order = order;
+        this.destination = destination;
+        this.cost = cost;
+        this.lowerBound = lowerBound;
+    }
+
+    public int getOrigin() {
+        return origin;
+    }
+
+    public int[] getOrder() {
+        return order;
+    }
+
+    public int getDestination() {
+        return destination;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * @return true if the cost is known to be optimal
+     */
+    public boolean isOptimal() {
+        return cost == lowerBound;
+    }
+
+    /**
+     * @return the relative gap of the cost to the lower bound, e.g. 0.05 for 5%
+     */
+    public double gap() {
+        return gap(cost, lowerBound);
+    }
+
+    /**
+     * @param cost       the cost of a tour
+     * @param lowerBound a lower bound on the optimal cost
+     * @return the relative gap of the cost to the bound, infinite for a bound of 0 below the cost
+     */
+    static double gap(int cost, int lowerBound) {
+        if (lowerBound == 0) {
+            return cost == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return (double) (cost - lowerBound) / lowerBound;
+    }
+
+} // end of class WaypointTour